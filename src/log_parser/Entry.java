@@ -1,207 +1,366 @@
-package log_parser;
-
-import javafx.scene.control.TextArea;
-import javafx.scene.control.TitledPane;
-
-/**
- * Created by Nicholas Ostaffe on 6/23/2016. Represents a single Entry(row) in a
- * Log and is responsible for further parsing of the file, GUI components, and
- * sorting logic
- */
-public class Entry implements Comparable<Entry> {
-	/**
-	 * The raw text for the entry
-	 */
-	private String entry;
-	private String date;
-	private String type;
-	private TitledPane tp;
-	private TextArea ta;
-	private static String sortOption;
-	private boolean isVisible = false;
-	private boolean titledPaneCreated = false;
-
-	/**
-	 * Further parses @param entry futher into local type and date variables and
-	 * builds GUI objects around the entry
-	 * 
-	 * @param entry is the entire String from the initial entry parsed on the date Regex
-	 */
-	public Entry(String entry) {
-		this.entry = entry;
-		parsePhrase();
-		try {
-			date = (entry.length() > 24) ? entry.substring(0, 24).replaceAll("(\\s+)|(-)|(,)|(:)", "") : entry.replaceAll("(\\s+)|(-)|(,)|(:)", "");
-			type = (entry.length() > 50) ? entry.substring(0, 50).split(" ")[2] : entry.split(" ")[2];
-		} catch (ArrayIndexOutOfBoundsException e) {
-		}
-
-		// Send type to Log to export to file so the type can be inferred in the future.
-		Log.addEntryType(type);
-	}
-
-	/**
-	 * Parses found word segments and separates them with a newline character
-	 */
-	private void parsePhrase() {
-		boolean foundOpenParenthesis = false;
-		boolean foundOpenBracket = false;
-		int openParenthesisCount = 0;
-		int openBracketCount = 0;
-
-		for (int i = 0; i < entry.length(); i++) {
-			char c = entry.charAt(i);
-			if (c == '(') {
-				if (foundOpenParenthesis) {
-					openParenthesisCount++;
-				} else {
-					foundOpenParenthesis = true;
-				}
-			}
-			if (c == '[') {
-				if (foundOpenBracket) {
-					openBracketCount++;
-				} else {
-					foundOpenBracket = true;
-				}
-			}
-			if (foundOpenParenthesis && c == ')') {
-				if (openParenthesisCount != 0) {
-					openParenthesisCount--;
-				} else {
-					entry = entry.substring(0, i + 1) + System.lineSeparator() + entry.substring(i + 1);
-					foundOpenParenthesis = false;
-				}
-			}
-			if (foundOpenBracket && c == ']') {
-				if (openBracketCount != 0) {
-					openBracketCount--;
-				} else {
-					entry = entry.substring(0, i + 1) + System.lineSeparator() + entry.substring(i + 1);
-					foundOpenBracket = false;
-				}
-			}
-		}
-	}
-
-	/**
-	 * Manages the sorting option for all Entries
-	 * 
-	 * @param sortOption is the selected sorting option in the GUI
-	 */
-	public static void setSortOption(String sortOption) {
-		Entry.sortOption = sortOption;
-	}
-
-	/**
-	 * Attaches style sheets to Entries of specific types
-	 */
-	private void setEntryColor() {
-		if (this.type.equals("WARN"))
-			tp.getStylesheets().add(this.getClass().getResource("WarningEntry.css").toExternalForm());
-		else if (this.type.equals("INFO"))
-			tp.getStylesheets().add(this.getClass().getResource("InformationEntry.css").toExternalForm());
-		else if (this.type.equals("ERROR"))
-			tp.getStylesheets().add(this.getClass().getResource("ErrorEntry.css").toExternalForm());
-		else if (this.type.equals("DEBUG"))
-			tp.getStylesheets().add(this.getClass().getResource("DebugEntry.css").toExternalForm());
-		else
-			tp.getStylesheets().add(this.getClass().getResource("DefaultEntry.css").toExternalForm());
-	}
-	
-	public String getEntry() {
-		return entry;
-	}
-
-	public String getTitle() {
-		return ((entry.length() > 160) ? entry.substring(0, 160).trim() : entry).replace(System.lineSeparator(), "").trim() + "...";
-	}
-
-	public TitledPane getTitledPane() {
-		if(!titledPaneCreated) {
-			// TitledPane creates a dropdown functionality
-			tp = new TitledPane();
-			tp.setExpanded(false);
-			setEntryColor(); // colors!
-			tp.setText(this.getTitle());
-			tp.setMaxWidth(1000);
-
-			// TextArea to be stored in TitledPane
-			ta = new TextArea(this.getEntry());
-			ta.setPrefSize(999, 100);
-			ta.setEditable(false);
-			DragResizer.makeResizable(ta);
-
-			// Add the TextArea to the TitledPane
-			tp.setContent(ta);
-			titledPaneCreated = true;
-		}
-		return tp;
-	}
-
-	/**
-	 * The sorting logic for Entry types which is based on the local date and
-	 * type variables
-	 * 
-	 * @param other object to be compared to
-	 * @return -1, 0, or 1 depending on the comparison of 'this' and 'other'
-	 */
-	@Override
-	public int compareTo(Entry other) {
-		if (sortOption.equals("Date")) {
-			if (this.date.equals(other.date)) {
-				return 0;
-			} else if (this.date.compareTo(other.date) > 0) {
-				return 1;
-			} else if (this.date.compareTo(other.date) < 0) {
-				return -1;
-			}
-
-		} else if (sortOption.equals("Type")) {
-			if (this.type.equals(other.type)) {
-				return 0;
-			} else if (Log.getTypePriority(this.type) > Log.getTypePriority(other.type)) {
-				return 1;
-			} else if (Log.getTypePriority(this.type) < Log.getTypePriority(other.type)) {
-				return -1;
-			}
-		}
-
-		// Execution should not reach this point
-		System.err.println("Something went wrong in compareTo");
-		return 0;
-	}
-
-	/**
-	 *
-	 * @return the Entry's title
-     */
-	@Override
-	public String toString() {
-		return getTitle();
-	}
-
-	/**
-	 *
-	 * @return whether the entry is currently visible
-     */
-	public boolean isVisible() {
-		return isVisible;
-	}
-
-	/**
-	 *
-	 * @param visible is the boolean to set the local visible variable
-     */
-	public void setVisible(boolean visible) {
-		isVisible = visible;
-	}
-
-	/**
-	 *
-	 * @return true if the TitledPane for this entry has been created and false otherwise
-     */
-	public boolean titledPaneWasCreated() {
-		return titledPaneCreated;
-	}
-}
+package log_parser;
+
+import java.nio.charset.Charset;
+
+/**
+ * Created by Nicholas Ostaffe on 6/23/2016. Represents a single Entry(row) in a
+ * Log and is responsible for further parsing of the file, GUI components, and
+ * sorting logic
+ *
+ * An Entry does not hold its own text. It refers to a row of the Log's EntryIndex
+ * and decodes its text from the MappedLogFile whenever the text is needed. The GUI
+ * components showing an Entry are EntryCells, which are shared between Entries.
+ */
+public class Entry implements Comparable<Entry> {
+	/**
+	 * Number of characters at the start of an entry that the date and type are parsed from
+	 */
+	static final int HEAD_LENGTH = 50;
+
+	private static final int TITLE_LENGTH = 160;
+
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+	private final EntryIndex index;
+	private final int id;
+	private static String sortOption;
+
+	/**
+	 * @param index the index holding the entry's file, offset, length, date and type
+	 * @param id    the row of the entry in @param index
+	 */
+	public Entry(EntryIndex index, int id) {
+		this.index = index;
+		this.id = id;
+	}
+
+	/**
+	 * Parses the date at the start of an entry, such as "2016-05-24 09:00:05,846". The time, seconds and
+	 * milliseconds are optional, and the time may also be separated from the date by a 'T'.
+	 * Runs once per entry while a file is read, so it works on the raw bytes and allocates nothing.
+	 *
+	 * @param head   the first bytes of the entry
+	 * @param offset the index of the first byte in @param head
+	 * @param length the number of bytes available
+	 * @return the date in milliseconds since the epoch, read as UTC, or EntryIndex.UNKNOWN_TIMESTAMP
+	 */
+	static long parseTimestamp(byte[] head, int offset, int length) {
+		int end = offset + length;
+		if (length < 10 || head[offset + 4] != '-' || head[offset + 7] != '-') {
+			return EntryIndex.UNKNOWN_TIMESTAMP;
+		}
+		int year = parseDigits(head, offset, 4);
+		int month = parseDigits(head, offset + 5, 2);
+		int day = parseDigits(head, offset + 8, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+			return EntryIndex.UNKNOWN_TIMESTAMP;
+		}
+		long timestamp = daysSinceEpoch(year, month, day) * MILLIS_PER_DAY;
+
+		int i = offset + 10;
+		if (i < end && (head[i] == ' ' || head[i] == 'T')) {
+			i++;
+		}
+		int hour = (i + 5 <= end && head[i + 2] == ':') ? parseDigits(head, i, 2) : -1;
+		int minute = (hour >= 0) ? parseDigits(head, i + 3, 2) : -1;
+		if (hour < 0 || minute < 0) {
+			return timestamp;
+		}
+		timestamp += (hour * 60L + minute) * 60 * 1000;
+		i += 5;
+
+		int second = (i + 3 <= end && head[i] == ':') ? parseDigits(head, i + 1, 2) : -1;
+		if (second < 0) {
+			return timestamp;
+		}
+		timestamp += second * 1000L;
+		i += 3;
+
+		// Milliseconds after a ',' or '.', missing digits count as trailing zeros
+		if (i < end && (head[i] == ',' || head[i] == '.')) {
+			int millis = 0;
+			int digits = 0;
+			for (i++; digits < 3 && i < end && head[i] >= '0' && head[i] <= '9'; i++, digits++) {
+				millis = millis * 10 + (head[i] - '0');
+			}
+			for (; digits < 3; digits++) {
+				millis *= 10;
+			}
+			timestamp += millis;
+		}
+		return timestamp;
+	}
+
+	/**
+	 * @return the value of @param count decimal digits, or -1 if one of them is not a digit
+	 */
+	private static int parseDigits(byte[] bytes, int offset, int count) {
+		int value = 0;
+		for (int i = offset; i < offset + count; i++) {
+			if (bytes[i] < '0' || bytes[i] > '9') {
+				return -1;
+			}
+			value = value * 10 + (bytes[i] - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Converts a date of the proleptic Gregorian calendar to a day count without going through
+	 * java.time, see http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+	 *
+	 * @return the number of days between 1970-01-01 and the date
+	 */
+	static long daysSinceEpoch(int year, int month, int day) {
+		year -= (month <= 2) ? 1 : 0;
+		long era = (year >= 0 ? year : year - 399) / 400;
+		long yearOfEra = year - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Parses the type (WARN, INFO, ...) following the date of an entry
+	 *
+	 * @param head the first characters of the entry
+	 * @return the type, or null if the entry has none
+	 */
+	static String parseType(String head) {
+		try {
+			return ((head.length() > HEAD_LENGTH) ? head.substring(0, HEAD_LENGTH) : head).split(" ")[2];
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Parses the type (WARN, INFO, ...) following the date of an entry, which is the third word
+	 * of the first HEAD_LENGTH bytes
+	 *
+	 * @param head    the first bytes of the entry
+	 * @param offset  the index of the first byte in @param head
+	 * @param length  the number of bytes available
+	 * @param charset the encoding of the file
+	 * @return the type, or null if the entry has none
+	 */
+	static String parseType(byte[] head, int offset, int length, Charset charset) {
+		int end = offset + Math.min(length, HEAD_LENGTH);
+		int spaces = 0;
+		int start = end;
+		for (int i = offset; i < end; i++) {
+			if (head[i] == ' ') {
+				if (spaces == 2) {
+					end = i;
+					break;
+				}
+				spaces++;
+				start = i + 1;
+			}
+		}
+		return (spaces == 2 && start < end) ? new String(head, start, end - start, charset) : null;
+	}
+
+	/**
+	 * Parses the logger of an entry, the name in brackets following its type, such as
+	 * "com.tririga.XSS" in "2016-05-24 09:00:06,090 WARN  [com.tririga.XSS] XSS potential..."
+	 *
+	 * @param text    the bytes of the entry
+	 * @param length  the number of bytes available
+	 * @param charset the encoding of the file
+	 * @return the logger, or null if the first line of the entry has none
+	 */
+	static String parseLogger(byte[] text, int length, Charset charset) {
+		int start = -1;
+		for (int i = 0; i < length && text[i] != '\n' && text[i] != '\r'; i++) {
+			if (start == -1 && text[i] == '[') {
+				start = i + 1;
+			} else if (start != -1 && text[i] == ']') {
+				return new String(text, start, i - start, charset);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parses found word segments and separates them with a newline character.
+	 * The text is read once and written once, so the cost is linear in the length of the entry.
+	 *
+	 * @param entry the text to format
+	 * @return @param entry with a line separator after every outermost closing bracket and parenthesis
+	 */
+	static String parsePhrase(String entry) {
+		String lineSeparator = System.lineSeparator();
+		StringBuilder formatted = new StringBuilder(entry.length() + 16 * lineSeparator.length());
+		boolean foundOpenParenthesis = false;
+		boolean foundOpenBracket = false;
+		int openParenthesisCount = 0;
+		int openBracketCount = 0;
+
+		for (int i = 0; i < entry.length(); i++) {
+			char c = entry.charAt(i);
+			formatted.append(c);
+			if (c == '(') {
+				if (foundOpenParenthesis) {
+					openParenthesisCount++;
+				} else {
+					foundOpenParenthesis = true;
+				}
+			} else if (c == '[') {
+				if (foundOpenBracket) {
+					openBracketCount++;
+				} else {
+					foundOpenBracket = true;
+				}
+			} else if (foundOpenParenthesis && c == ')') {
+				if (openParenthesisCount != 0) {
+					openParenthesisCount--;
+				} else {
+					formatted.append(lineSeparator);
+					foundOpenParenthesis = false;
+				}
+			} else if (foundOpenBracket && c == ']') {
+				if (openBracketCount != 0) {
+					openBracketCount--;
+				} else {
+					formatted.append(lineSeparator);
+					foundOpenBracket = false;
+				}
+			}
+		}
+		return formatted.toString();
+	}
+
+	/**
+	 * Manages the sorting option for all Entries
+	 * 
+	 * @param sortOption is the selected sorting option in the GUI
+	 */
+	public static void setSortOption(String sortOption) {
+		Entry.sortOption = sortOption;
+	}
+
+	/**
+	 * Picks the style sheet that colors Entries of specific types
+	 *
+	 * @return the location of the style sheet for the type of this Entry
+	 */
+	public String getStyleSheet() {
+		String type = getType();
+		if ("WARN".equals(type))
+			return this.getClass().getResource("WarningEntry.css").toExternalForm();
+		else if ("INFO".equals(type))
+			return this.getClass().getResource("InformationEntry.css").toExternalForm();
+		else if ("ERROR".equals(type))
+			return this.getClass().getResource("ErrorEntry.css").toExternalForm();
+		else if ("DEBUG".equals(type))
+			return this.getClass().getResource("DebugEntry.css").toExternalForm();
+		else
+			return this.getClass().getResource("DefaultEntry.css").toExternalForm();
+	}
+
+	/**
+	 *
+	 * @return the raw text of the entry, decoded from the file
+	 */
+	public String getEntry() {
+		return getSource().decode(index.getOffset(id), index.getLength(id));
+	}
+
+	/**
+	 * Only decodes as much of the file as the title needs. Entries of a combined log are tagged with
+	 * the name of the file they came from.
+	 *
+	 * @return the first line(s) of the entry, shortened to fit a TitledPane
+	 */
+	public String getTitle() {
+		String head = getHead(TITLE_LENGTH);
+		String title = ((head.length() > TITLE_LENGTH) ? head.substring(0, TITLE_LENGTH).trim() : head).replace("\r", "").replace("\n", "").trim() + "...";
+		return (index.getSourceCount() > 1) ? "[" + getSource().getFile().getName() + "] " + title : title;
+	}
+
+	/**
+	 *
+	 * @param length the number of characters wanted
+	 * @return at least the first @param length characters of the entry, if the entry is that long
+	 */
+	String getHead(int length) {
+		// A character takes at most 4 bytes in the encodings used for logs
+		return getSource().decode(index.getOffset(id), Math.min(index.getLength(id), length * 4));
+	}
+
+	/**
+	 *
+	 * @return the type of the entry (WARN, INFO, ...), or null if it has none
+	 */
+	public String getType() {
+		byte type = index.getType(id);
+		return (type == EntryIndex.UNKNOWN_TYPE) ? parseType(getHead(HEAD_LENGTH)) : EntryTypes.getEntryType(type);
+	}
+
+	/**
+	 *
+	 * @return the date of the entry in milliseconds, or EntryIndex.UNKNOWN_TIMESTAMP
+	 */
+	public long getTimestamp() {
+		return index.getTimestamp(id);
+	}
+
+	/**
+	 *
+	 * @return the row of this entry in the Log's EntryIndex
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 *
+	 * @return the mapped file the text of this entry is stored in. A followed file is mapped again
+	 * whenever it grows, so the mapping is always looked up in the index.
+	 */
+	public MappedLogFile getSource() {
+		return index.getSource(id);
+	}
+
+	/**
+	 *
+	 * @return the text of the entry as it is shown when the entry is opened
+	 */
+	public String getFormattedEntry() {
+		return parsePhrase(getEntry());
+	}
+
+	/**
+	 * The sorting logic for Entry types which is based on the local date and
+	 * type variables
+	 * 
+	 * @param other object to be compared to
+	 * @return -1, 0, or 1 depending on the comparison of 'this' and 'other'
+	 */
+	@Override
+	public int compareTo(Entry other) {
+		// Entries that are equal on the sort option keep the order of the file
+		if (sortOption.equals("Date")) {
+			int compare = Long.compare(this.getTimestamp(), other.getTimestamp());
+			return (compare != 0) ? compare : Integer.compare(this.id, other.id);
+		} else if (sortOption.equals("Type")) {
+			// Type ordinals are assigned in the order types were first seen, which is their priority
+			int compare = Byte.compare(index.getType(this.id), other.index.getType(other.id));
+			return (compare != 0) ? compare : Integer.compare(this.id, other.id);
+		}
+
+		// Execution should not reach this point
+		System.err.println("Something went wrong in compareTo");
+		return 0;
+	}
+
+	/**
+	 *
+	 * @return the Entry's title
+     */
+	@Override
+	public String toString() {
+		return getTitle();
+	}
+}
@@ -0,0 +1,288 @@
+package log_parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Splits a stream of log bytes into entries without building a String per line.
+ *
+ * The bytes are read through one reusable buffer and scanned for line ends in place. A line accepted by
+ * the EntryBoundaryDetector begins a new entry, and every line in between belongs to the entry above it.
+ * For each entry the assembler reports where it starts, how many bytes it spans and the first
+ * HEAD_SIZE bytes of its first line, which is all that is needed to parse its date and type.
+ *
+ * Usage:
+ * <pre>
+ * EntryAssembler assembler = new EntryAssembler(channel, 0, StandardBoundaryDetector.DATE);
+ * while (assembler.next()) {
+ *     assembler.getOffset(); assembler.getLength(); assembler.getHead();
+ * }
+ * </pre>
+ *
+ * A large file can be split by several assemblers in parallel, each given one range of byte offsets. An
+ * assembler of a range that may begin inside an entry resynchronizes: it skips the lines up to the first
+ * line in its range that starts an entry, since they belong to the last entry of the range before. Every
+ * assembler reads its own last entry up to the next entry start, even past the end of its range, so the
+ * ranges together return every entry of the file exactly once.
+ */
+public class EntryAssembler {
+
+    /**
+     * Number of bytes kept from the start of every entry
+     */
+    public static final int HEAD_SIZE = 64;
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final EntryBoundaryDetector detector;
+    private final long startOffset;
+    private final long endOffset;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+
+    /**
+     * File offset of buffer[0]
+     */
+    private long bufferOffset;
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfInput = false;
+    private boolean finished = false;
+
+    /**
+     * True while the lines before the first entry start of the range are being skipped
+     */
+    private boolean resynchronizing;
+
+    // The line currently being scanned
+    private long lineStart;
+    private final byte[] lineHead = new byte[HEAD_SIZE];
+    private int lineHeadLength = 0;
+    private boolean lineHeadComplete = false;
+    private boolean lineOpen = false;
+
+    // The entry currently being built
+    private long entryStart = -1;
+    private byte[] entryHead = new byte[HEAD_SIZE];
+    private int entryHeadLength = 0;
+    private boolean entryDated = false;
+
+    // The last entry returned by next()
+    private long offset;
+    private long length;
+    private byte[] head = new byte[HEAD_SIZE];
+    private int headLength = 0;
+
+    /**
+     * @param channel     the bytes to split, read from their current position
+     * @param startOffset the file offset of the first byte read from @param channel
+     * @param detector    decides which lines start a new entry
+     */
+    public EntryAssembler(ReadableByteChannel channel, long startOffset, EntryBoundaryDetector detector) {
+        this(channel, startOffset, Long.MAX_VALUE, false, detector);
+    }
+
+    /**
+     * Splits only the entries that start in a range of a file
+     *
+     * @param channel       the bytes to split, read from their current position, which is the file offset
+     *                      @param startOffset, or the byte before it if @param resynchronize is set
+     * @param startOffset   the file offset of the first byte of the range
+     * @param endOffset     the file offset just after the last byte of the range
+     * @param resynchronize true if @param startOffset may lie inside an entry, in which case the lines up to
+     *                      the first entry start at or after @param startOffset are skipped
+     * @param detector      decides which lines start a new entry
+     */
+    public EntryAssembler(ReadableByteChannel channel, long startOffset, long endOffset, boolean resynchronize,
+                          EntryBoundaryDetector detector) {
+        this.channel = channel;
+        this.detector = detector;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.resynchronizing = resynchronize;
+        // Reading the byte before the range tells whether the range starts on a line of its own
+        this.bufferOffset = resynchronize ? startOffset - 1 : startOffset;
+        this.lineStart = bufferOffset;
+    }
+
+    /**
+     * Moves to the next complete entry.
+     *
+     * @return false once the input has been used up
+     * @throws IOException if the channel cannot be read
+     */
+    public boolean next() throws IOException {
+        while (!finished) {
+            if (position == limit) {
+                if (!fill()) {
+                    return finish();
+                }
+            }
+
+            // Copy the start of the line, it is all that is needed to detect an entry
+            while (!lineHeadComplete && position < limit) {
+                byte b = buffer[position];
+                if (b == '\n' || b == '\r') {
+                    lineHeadComplete = true;
+                    break;
+                }
+                lineHead[lineHeadLength++] = b;
+                position++;
+                lineHeadComplete = lineHeadLength == HEAD_SIZE;
+            }
+            lineOpen = true;
+
+            // Skip the rest of the line
+            int end = position;
+            while (end < limit && buffer[end] != '\n') {
+                end++;
+            }
+            position = end;
+            if (end == limit) {
+                continue;
+            }
+            position++;
+            if (endLine(bufferOffset + position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     *
+     * @return the file offset of the current entry
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     *
+     * @return the number of bytes of the current entry, including its last line separator
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     *
+     * @return the first bytes of the current entry. The array is reused by the next call to next()
+     */
+    public byte[] getHead() {
+        return head;
+    }
+
+    /**
+     *
+     * @return the number of valid bytes in getHead()
+     */
+    public int getHeadLength() {
+        return headLength;
+    }
+
+    /**
+     *
+     * @return the file offset just after the last byte read from the channel
+     */
+    public long getPosition() {
+        return bufferOffset + limit;
+    }
+
+    /**
+     * Reads the next run of bytes into the buffer
+     *
+     * @return false if the channel has no more bytes
+     */
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        bufferOffset += limit;
+        position = 0;
+        limit = 0;
+        byteBuffer.clear();
+        while (limit == 0) {
+            int read = channel.read(byteBuffer);
+            if (read == -1) {
+                endOfInput = true;
+                return false;
+            }
+            limit = byteBuffer.position();
+        }
+        return true;
+    }
+
+    /**
+     * Handles a line that ends just before @param nextLineStart
+     *
+     * @return true if the line completed an entry
+     */
+    private boolean endLine(long nextLineStart) {
+        boolean completed = false;
+        boolean dated = detector.isEntryStart(lineHead, lineHeadLength);
+        if (resynchronizing && (!dated || lineStart < startOffset || lineStart >= endOffset)) {
+            // The lines up to the first entry start of the range belong to the range before
+            finished = lineStart >= endOffset;
+        } else if (entryStart == -1) {
+            // The first line always begins an entry, in a range it is the first entry start
+            resynchronizing = false;
+            startEntry(dated);
+        } else if (dated && lineStart >= endOffset) {
+            // The first entry start after the range ends the last entry of the range
+            complete(lineStart);
+            finished = true;
+            completed = true;
+        } else if (dated) {
+            complete(lineStart);
+            startEntry(true);
+            completed = true;
+        }
+        lineStart = nextLineStart;
+        lineHeadLength = 0;
+        lineHeadComplete = false;
+        lineOpen = false;
+        return completed;
+    }
+
+    private void startEntry(boolean dated) {
+        entryStart = lineStart;
+        System.arraycopy(lineHead, 0, entryHead, 0, lineHeadLength);
+        entryHeadLength = lineHeadLength;
+        entryDated = dated;
+    }
+
+    /**
+     * Publishes the entry being built, ending just before @param end
+     */
+    private void complete(long end) {
+        offset = entryStart;
+        length = end - entryStart;
+        byte[] swap = head;
+        head = entryHead;
+        entryHead = swap;
+        headLength = entryHeadLength;
+    }
+
+    /**
+     * Publishes the last entry of the input, which is only kept if it starts with a date
+     */
+    private boolean finish() {
+        long end = bufferOffset + limit;
+        if (lineOpen && lineStart < end && endLine(end)) {
+            // The unterminated last line began an entry, which is published by the next call
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        finished = true;
+        if (entryStart != -1 && entryDated) {
+            complete(end);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,19 @@
+package log_parser;
+
+/**
+ * Decides which lines of a log begin a new entry. Every other line is a continuation of the entry above it,
+ * such as the frames of a stack trace.
+ *
+ * Detectors are called once for every line of a file, so implementations should only look at the bytes
+ * they are given and must not allocate. StandardBoundaryDetector holds the formats known to the parser.
+ */
+public interface EntryBoundaryDetector {
+
+    /**
+     * @param line   the first bytes of a line, without the line separator. Only the first
+     *               EntryAssembler.HEAD_SIZE bytes of a long line are passed in.
+     * @param length the number of valid bytes in @param line
+     * @return true if the line starts a new entry
+     */
+    boolean isEntryStart(byte[] line, int length);
+}
@@ -0,0 +1,76 @@
+package log_parser;
+
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.TitledPane;
+
+/**
+ * A row of a Log's ListView. The ListView only creates as many cells as fit on the screen and hands
+ * them a different Entry whenever the user scrolls, so a cell owns one TitledPane and one TextArea
+ * and fills them from whichever Entry it currently shows.
+ *
+ * Whether an Entry is opened is stored in the Log's ExpandedEntries, so it survives the cell being reused.
+ */
+public class EntryCell extends ListCell<Entry> {
+
+    private final TitledPane tp = new TitledPane();
+    private final TextArea ta = new TextArea();
+    private final ExpandedEntries expanded;
+    private Entry entry;
+
+    /**
+     * @param expanded the entries opened in the Log the cell belongs to
+     */
+    public EntryCell(ExpandedEntries expanded) {
+        this.expanded = expanded;
+        // TitledPane creates a dropdown functionality
+        tp.setExpanded(false);
+        tp.setAnimated(false);
+        tp.setMaxWidth(1000);
+
+        // TextArea to be stored in TitledPane
+        ta.setPrefSize(999, 100);
+        ta.setEditable(false);
+        DragResizer.makeResizable(ta);
+        tp.setContent(ta);
+
+        tp.expandedProperty().addListener((observable, wasExpanded, isExpanded) -> {
+            if (entry != null && expanded.isExpanded(entry.getId()) != isExpanded) {
+                expanded.setExpanded(entry.getId(), isExpanded);
+                showText();
+            }
+        });
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+    }
+
+    @Override
+    protected void updateItem(Entry item, boolean empty) {
+        super.updateItem(item, empty);
+
+        // Detach from the previous Entry first so setting up the TitledPane does not change it
+        entry = null;
+        if (empty || item == null) {
+            ta.clear();
+            setGraphic(null);
+            return;
+        }
+
+        tp.setText(item.getTitle());
+        String styleSheet = item.getStyleSheet(); // colors!
+        if (tp.getStylesheets().size() != 1 || !tp.getStylesheets().get(0).equals(styleSheet)) {
+            tp.getStylesheets().setAll(styleSheet);
+        }
+        tp.setExpanded(expanded.isExpanded(item.getId()));
+        entry = item;
+        showText();
+        setGraphic(tp);
+    }
+
+    /**
+     * The text is only decoded and formatted while the entry is opened
+     */
+    private void showText() {
+        ta.setText(expanded.isExpanded(entry.getId()) ? entry.getFormattedEntry() : "");
+    }
+}
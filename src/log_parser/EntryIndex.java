@@ -0,0 +1,252 @@
+package log_parser;
+
+import java.util.Arrays;
+
+/**
+ * A compact, primitive index of the entries in a log file. Every entry is described by its
+ * start offset and length in the file, its timestamp in epoch milliseconds and the ordinal of its type.
+ * An index can also hold the entries of several files that were combined into one log, in which case
+ * every entry also records the number of the file it was read from.
+ * Fields pulled out of the text of the entries, such as the logger, are kept in FieldColumns next to it.
+ *
+ * Rows are stored in fixed size pages, so adding rows never copies the rows that already exist and
+ * readers on other threads can keep using any row below the size they were handed.
+ * Rows are only ever added by one thread at a time.
+ */
+public class EntryIndex {
+
+    /**
+     * Timestamp stored for entries whose date could not be parsed, sorts before every real date
+     */
+    public static final long UNKNOWN_TIMESTAMP = Long.MIN_VALUE;
+
+    /**
+     * Type ordinal stored for entries without a known type
+     */
+    public static final byte UNKNOWN_TYPE = -1;
+
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private long[][] offsets = new long[16][];
+    private int[][] lengths = new int[16][];
+    private long[][] timestamps = new long[16][];
+    private byte[][] types = new byte[16][];
+
+    /**
+     * Source numbers of the entries, only allocated once an entry comes from a second file
+     */
+    private short[][] sources;
+    private volatile MappedLogFile[] files = new MappedLogFile[0];
+    private volatile int size = 0;
+    private volatile FieldColumns fields;
+
+    /**
+     * Registers a file that entries are read from. Has to be called before the first entry of the file is added.
+     *
+     * @param file the mapped file
+     * @return the source number to add the entries of @param file with
+     */
+    public int addSource(MappedLogFile file) {
+        MappedLogFile[] grown = Arrays.copyOf(files, files.length + 1);
+        grown[files.length] = file;
+        if (grown.length > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many files in one log");
+        }
+        files = grown;
+        return grown.length - 1;
+    }
+
+    /**
+     * Replaces the mapping of a file that was registered before, such as a followed file that has grown.
+     * The new mapping has to cover at least the bytes of the old one.
+     *
+     * @param source the number addSource returned for the file
+     * @param file   the new mapping of the file
+     */
+    public void replaceSource(int source, MappedLogFile file) {
+        MappedLogFile[] replaced = files.clone();
+        replaced[source] = file;
+        files = replaced;
+    }
+
+    /**
+     * Appends a row read from the first file to the index
+     *
+     * @return the id of the new row
+     */
+    public int add(long offset, int length, long timestamp, byte type) {
+        return add(0, offset, length, timestamp, type);
+    }
+
+    /**
+     * Appends a row to the index
+     *
+     * @param source the number addSource returned for the file the entry was read from
+     * @return the id of the new row
+     */
+    public int add(int source, long offset, int length, long timestamp, byte type) {
+        int id = size;
+        int page = id >>> PAGE_BITS;
+        if (page == offsets.length) {
+            offsets = Arrays.copyOf(offsets, page * 2);
+            lengths = Arrays.copyOf(lengths, page * 2);
+            timestamps = Arrays.copyOf(timestamps, page * 2);
+            types = Arrays.copyOf(types, page * 2);
+            if (sources != null) {
+                sources = Arrays.copyOf(sources, page * 2);
+            }
+        }
+        if (offsets[page] == null) {
+            offsets[page] = new long[PAGE_SIZE];
+            lengths[page] = new int[PAGE_SIZE];
+            timestamps[page] = new long[PAGE_SIZE];
+            types[page] = new byte[PAGE_SIZE];
+        }
+        int slot = id & PAGE_MASK;
+        offsets[page][slot] = offset;
+        lengths[page][slot] = length;
+        timestamps[page][slot] = timestamp;
+        types[page][slot] = type;
+        if (source != 0 || (sources != null && sources[page] != null)) {
+            if (sources == null) {
+                sources = new short[offsets.length][];
+            }
+            if (sources[page] == null) {
+                sources[page] = new short[PAGE_SIZE];
+            }
+            sources[page][slot] = (short) source;
+        }
+        size = id + 1;
+        return id;
+    }
+
+    /**
+     * Frees the pages holding only rows below an id, for readers that hand every row on as it is added and
+     * never look at it again, such as LogFile.stream. The rows that were freed cannot be read any more.
+     *
+     * @param id the first row that is still needed
+     */
+    public void discard(int id) {
+        for (int page = 0; page < (id >>> PAGE_BITS) && page < offsets.length; page++) {
+            offsets[page] = null;
+            lengths[page] = null;
+            timestamps[page] = null;
+            types[page] = null;
+            if (sources != null) {
+                sources[page] = null;
+            }
+        }
+        if (fields != null) {
+            fields.discard(id);
+        }
+    }
+
+    /**
+     *
+     * @return the number of rows in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Changes the length of a row, used when more lines are appended to the last entry of a followed file
+     */
+    public void setLength(int id, int length) {
+        lengths[id >>> PAGE_BITS][id & PAGE_MASK] = length;
+    }
+
+    public long getOffset(int id) {
+        return offsets[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    public int getLength(int id) {
+        return lengths[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    public long getTimestamp(int id) {
+        return timestamps[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    public byte getType(int id) {
+        return types[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    /**
+     * Binary searches the dates of the first @param count rows, which are in date order the way a log
+     * is written. Rows without a date are ordered by the nearest date above them.
+     *
+     * @param timestamp a date in milliseconds since the epoch
+     * @param count     the number of rows to search
+     * @return the id of the first row dated at or after @param timestamp, or @param count if there is none
+     */
+    public int firstAtOrAfter(long timestamp, int count) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long date = UNKNOWN_TIMESTAMP;
+            for (int id = middle; id >= 0 && date == UNKNOWN_TIMESTAMP; id--) {
+                date = getTimestamp(id);
+            }
+            if (date < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     *
+     * @return the source number of the file the entry was read from
+     */
+    public int getSourceNumber(int id) {
+        short[][] pages = sources;
+        if (pages == null) {
+            return 0;
+        }
+        short[] page = pages[id >>> PAGE_BITS];
+        return (page == null) ? 0 : page[id & PAGE_MASK];
+    }
+
+    /**
+     *
+     * @return the file the entry was read from
+     */
+    public MappedLogFile getSource(int id) {
+        return files[getSourceNumber(id)];
+    }
+
+    /**
+     *
+     * @param source a number returned by addSource
+     * @return the file registered as @param source
+     */
+    public MappedLogFile getFile(int source) {
+        return files[source];
+    }
+
+    /**
+     *
+     * @return the fields extracted from the entries, or null if their format has none
+     */
+    public FieldColumns getFields() {
+        return fields;
+    }
+
+    public void setFields(FieldColumns fields) {
+        this.fields = fields;
+    }
+
+    /**
+     *
+     * @return the number of files the entries of the index were read from
+     */
+    public int getSourceCount() {
+        return files.length;
+    }
+}
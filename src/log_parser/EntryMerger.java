@@ -0,0 +1,118 @@
+package log_parser;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Interleaves the entries of several files by date, the way the files' applications wrote them.
+ *
+ * Each file is split by its own EntryAssembler, and a heap keeps the assemblers ordered by the date
+ * of the entry each of them is positioned on. Every call to next() hands out the earliest of those
+ * entries and moves only its assembler forward, so the files are streamed once and never copied.
+ * Entries without a date keep the date of the entry above them so they stay with it, and entries
+ * with equal dates are taken from the files in the order the files were given.
+ *
+ * Usage is the same as for a single EntryAssembler, with getSource() telling which file the current
+ * entry belongs to.
+ */
+public class EntryMerger {
+
+    private final PriorityQueue<Input> heap = new PriorityQueue<>();
+    private final Input[] inputs;
+    private Input current;
+
+    /**
+     * @param assemblers one assembler per file, positioned before their first entry
+     */
+    public EntryMerger(List<EntryAssembler> assemblers) throws IOException {
+        inputs = new Input[assemblers.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = new Input(assemblers.get(i), i);
+            if (inputs[i].advance()) {
+                heap.add(inputs[i]);
+            }
+        }
+    }
+
+    /**
+     * Moves to the earliest entry not handed out yet
+     *
+     * @return false once every file has been used up
+     * @throws IOException if a file cannot be read
+     */
+    public boolean next() throws IOException {
+        if (current != null && current.advance()) {
+            heap.add(current);
+        }
+        current = heap.poll();
+        return current != null;
+    }
+
+    /**
+     *
+     * @return the position of the current entry's file in the list of assemblers
+     */
+    public int getSource() {
+        return current.source;
+    }
+
+    public long getOffset() {
+        return current.assembler.getOffset();
+    }
+
+    public long getLength() {
+        return current.assembler.getLength();
+    }
+
+    public byte[] getHead() {
+        return current.assembler.getHead();
+    }
+
+    public int getHeadLength() {
+        return current.assembler.getHeadLength();
+    }
+
+    /**
+     *
+     * @return the number of bytes read from all files together
+     */
+    public long getPosition() {
+        long position = 0;
+        for (Input input : inputs) {
+            position += input.assembler.getPosition();
+        }
+        return position;
+    }
+
+    /**
+     * One file of the merge and the date its next entry is ordered by
+     */
+    private static class Input implements Comparable<Input> {
+        final EntryAssembler assembler;
+        final int source;
+        long key = EntryIndex.UNKNOWN_TIMESTAMP;
+
+        Input(EntryAssembler assembler, int source) {
+            this.assembler = assembler;
+            this.source = source;
+        }
+
+        boolean advance() throws IOException {
+            if (!assembler.next()) {
+                return false;
+            }
+            long timestamp = Entry.parseTimestamp(assembler.getHead(), 0, assembler.getHeadLength());
+            if (timestamp != EntryIndex.UNKNOWN_TIMESTAMP) {
+                key = timestamp;
+            }
+            return true;
+        }
+
+        @Override
+        public int compareTo(Input other) {
+            int order = Long.compare(key, other.key);
+            return (order != 0) ? order : Integer.compare(source, other.source);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package log_parser;
+
+import java.util.Arrays;
+
+/**
+ * Sorts entry ids on the primitive keys of an EntryIndex instead of comparing Entry objects.
+ *
+ * Where the key and the id fit together in 64 bits they are packed into one long and sorted with
+ * Arrays.parallelSort, otherwise a merge sort runs over the key and id arrays. Entries with equal
+ * keys are always ordered by id, which is their position in the file.
+ */
+public class EntrySorter {
+
+    private EntrySorter() {
+    }
+
+    /**
+     * Sorts @param ids by the date of their entries
+     *
+     * @param ids   the ids to sort, sorted in place
+     * @param index the index the ids refer to
+     */
+    public static void sortByDate(int[] ids, EntryIndex index) {
+        long[] keys = new long[ids.length];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        boolean sorted = true;
+        for (int i = 0; i < ids.length; i++) {
+            long timestamp = index.getTimestamp(ids[i]);
+            keys[i] = timestamp;
+            if (timestamp != EntryIndex.UNKNOWN_TIMESTAMP) {
+                min = Math.min(min, timestamp);
+                max = Math.max(max, timestamp);
+            }
+            if (i > 0 && (keys[i - 1] > timestamp || (keys[i - 1] == timestamp && ids[i - 1] > ids[i]))) {
+                sorted = false;
+            }
+        }
+        if (sorted) {
+            return;
+        }
+
+        // Unknown dates sort first, every known date is stored relative to the earliest one
+        int idBits = idBits(ids);
+        if (min > max || max - min < (1L << (63 - idBits)) - 1) {
+            long[] packed = new long[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                long key = (keys[i] == EntryIndex.UNKNOWN_TIMESTAMP) ? 0 : keys[i] - min + 1;
+                packed[i] = (key << idBits) | ids[i];
+            }
+            unpack(packed, ids, idBits);
+        } else {
+            mergeSort(keys, ids);
+        }
+    }
+
+    /**
+     * Sorts @param ids by the priority of their entries' types
+     *
+     * @param ids   the ids to sort, sorted in place
+     * @param index the index the ids refer to
+     */
+    public static void sortByType(int[] ids, EntryIndex index) {
+        int idBits = idBits(ids);
+        long[] packed = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            // Shift the ordinals up by one so entries without a type (-1) sort first
+            long key = index.getType(ids[i]) + 1;
+            packed[i] = (key << idBits) | ids[i];
+        }
+        unpack(packed, ids, idBits);
+    }
+
+    /**
+     * @return the number of bits needed to store the largest of @param ids
+     */
+    private static int idBits(int[] ids) {
+        int max = 0;
+        for (int id : ids) {
+            max = Math.max(max, id);
+        }
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+    }
+
+    private static void unpack(long[] packed, int[] ids, int idBits) {
+        Arrays.parallelSort(packed);
+        long mask = (1L << idBits) - 1;
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (int) (packed[i] & mask);
+        }
+    }
+
+    /**
+     * Stable bottom-up merge sort of two parallel arrays on (key, id)
+     */
+    private static void mergeSort(long[] keys, int[] ids) {
+        int n = ids.length;
+        long[] keyBuffer = new long[n];
+        int[] idBuffer = new int[n];
+        long[] fromKeys = keys;
+        int[] fromIds = ids;
+        for (int width = 1; width < n; width *= 2) {
+            for (int low = 0; low < n; low += 2 * width) {
+                int middle = Math.min(low + width, n);
+                int high = Math.min(low + 2 * width, n);
+                int left = low;
+                int right = middle;
+                for (int k = low; k < high; k++) {
+                    if (right >= high || (left < middle && (fromKeys[left] < fromKeys[right]
+                            || (fromKeys[left] == fromKeys[right] && fromIds[left] < fromIds[right])))) {
+                        keyBuffer[k] = fromKeys[left];
+                        idBuffer[k] = fromIds[left++];
+                    } else {
+                        keyBuffer[k] = fromKeys[right];
+                        idBuffer[k] = fromIds[right++];
+                    }
+                }
+            }
+            long[] swapKeys = fromKeys;
+            fromKeys = keyBuffer;
+            keyBuffer = swapKeys;
+            int[] swapIds = fromIds;
+            fromIds = idBuffer;
+            idBuffer = swapIds;
+        }
+        if (fromIds != ids) {
+            System.arraycopy(fromIds, 0, ids, 0, n);
+        }
+    }
+}
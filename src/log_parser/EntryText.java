@@ -0,0 +1,127 @@
+package log_parser;
+
+import java.nio.charset.Charset;
+
+/**
+ * A reusable view of one entry while a Query is evaluated against it.
+ *
+ * Structured fields are read from the EntryIndex, and the bytes of the entry are only copied out of
+ * its MappedLogFile, and only decoded, once a predicate asks for them. One EntryText is used by one
+ * thread and moved from entry to entry with moveTo.
+ */
+public class EntryText {
+
+    private final EntryIndex index;
+    private int id;
+    private MappedLogFile source;
+
+    private byte[] bytes = new byte[8192];
+    private int length = -1;
+    private String text;
+    private String logger;
+    private boolean loggerParsed;
+
+    /**
+     * @param index the index holding the entries' files, offsets, lengths, dates and types
+     */
+    public EntryText(EntryIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Points the view at another entry, forgetting everything read from the previous one
+     *
+     * @param id the id of the entry
+     */
+    public void moveTo(int id) {
+        this.id = id;
+        source = index.getSource(id);
+        length = -1;
+        text = null;
+        logger = null;
+        loggerParsed = false;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getTimestamp() {
+        return index.getTimestamp(id);
+    }
+
+    /**
+     *
+     * @return the priority of the entry's type, or EntryIndex.UNKNOWN_TYPE if the index does not hold it
+     */
+    public byte getTypePriority() {
+        return index.getType(id);
+    }
+
+    /**
+     *
+     * @return the type of the entry parsed from its text, for entries whose type the index does not hold
+     */
+    public String getType() {
+        return Entry.parseType(getBytes(), 0, getLength(), source.getCharset());
+    }
+
+    /**
+     *
+     * @return the logger named on the first line of the entry, or null
+     */
+    public String getLogger() {
+        if (!loggerParsed) {
+            logger = Entry.parseLogger(getBytes(), getLength(), source.getCharset());
+            loggerParsed = true;
+        }
+        return logger;
+    }
+
+    /**
+     *
+     * @return the fields extracted from the entries of the index, or null if they have none
+     */
+    public FieldColumns getFields() {
+        return index.getFields();
+    }
+
+    /**
+     *
+     * @return the bytes of the entry, the array is reused for the next entry
+     */
+    public byte[] getBytes() {
+        if (length == -1) {
+            length = index.getLength(id);
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            source.get(index.getOffset(id), bytes, 0, length);
+        }
+        return bytes;
+    }
+
+    /**
+     *
+     * @return the number of valid bytes in getBytes()
+     */
+    public int getLength() {
+        getBytes();
+        return length;
+    }
+
+    /**
+     *
+     * @return the decoded text of the entry
+     */
+    public String getText() {
+        if (text == null) {
+            text = new String(getBytes(), 0, getLength(), source.getCharset());
+        }
+        return text;
+    }
+
+    public Charset getCharset() {
+        return source.getCharset();
+    }
+}
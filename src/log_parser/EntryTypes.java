@@ -0,0 +1,75 @@
+package log_parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The types (WARN, INFO, ...) seen in the logs read so far. A type's priority is its code in a shared
+ * StringDictionary, which is how entries are sorted by type. Shared by every log that is open.
+ *
+ * The dictionary is seeded with the types listed in EntryTypes.txt, in the order they are listed, so the
+ * common types have the same priority whichever log is opened first. Other types follow in the order in
+ * which they are first seen. Looking up a type that is already known never locks.
+ */
+public class EntryTypes {
+
+    private static final String SEED = "EntryTypes.txt";
+
+    private static final StringDictionary entryTypes = seeded();
+
+    private EntryTypes() {
+    }
+
+    /**
+     * @return a dictionary holding the types of EntryTypes.txt
+     */
+    private static StringDictionary seeded() {
+        StringDictionary types = new StringDictionary();
+        try (InputStream in = EntryTypes.class.getResourceAsStream(SEED)) {
+            if (in != null) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        types.intern(line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return types;
+    }
+
+    /**
+     *
+     * @param type represents a type for a given Entry
+     * @return the index(representing a priority level) of the type, or -1 if it was never added
+     */
+    public static int getTypePriority(String type) {
+        return entryTypes.lookup(type);
+    }
+
+    /**
+     * Only add unique types to the dictionary. It manages the priority of certain
+     * entry types so there is a known way to sort them by type later.
+     * @param type is the Type to be added to the dictionary
+     * @return the index(representing a priority level) of the type, or -1 if @param type is null
+     */
+    public static int addEntryType(String type) {
+        return entryTypes.intern(type);
+    }
+
+    /**
+     *
+     * @param priority the index of a type that was added with addEntryType
+     * @return the type at @param priority
+     */
+    public static String getEntryType(int priority) {
+        return entryTypes.get(priority);
+    }
+}
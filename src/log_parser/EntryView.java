@@ -0,0 +1,221 @@
+package log_parser;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of Entries shown by a Log, such as all entries of the file, the matches of a search or the entries
+ * of a time range, stored as an array of entry ids over the Log's list of Entries by id.
+ *
+ * Sorting and reversing do not move Entries. A sort picks a permutation of the ids that is computed with
+ * EntrySorter the first time a key is used and kept per key until ids are added, and reversing only flips
+ * the direction the ids are read in, so switching between file order, Date, Type and reversed order is
+ * instant after the first sort. Entries can only be added at the end of the file order, they show at the
+ * end of a sorted order as well.
+ */
+public class EntryView extends ObservableListBase<Entry> {
+
+    private final List<Entry> entriesById;
+    private int[] ids = new int[16];
+    private int size = 0;
+
+    /**
+     * The ids in the order they are shown in, ids itself or one of the sorted permutations
+     */
+    private int[] order;
+    private String sortKey;
+    private final Map<String, int[]> sorted = new HashMap<>();
+    private boolean reversed = false;
+
+    /**
+     * @param entriesById the Entries of the log, the Entry with id i at position i
+     */
+    public EntryView(List<Entry> entriesById) {
+        this.entriesById = entriesById;
+        this.order = ids;
+    }
+
+    @Override
+    public Entry get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return entriesById.get(order[reversed ? size - 1 - index : index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds an Entry at the end of the file order
+     */
+    @Override
+    public boolean add(Entry entry) {
+        return addAll(Collections.singletonList(entry));
+    }
+
+    /**
+     * Adds Entries at the end of the file order
+     */
+    @Override
+    public boolean addAll(Collection<? extends Entry> entries) {
+        if (entries.isEmpty()) {
+            return false;
+        }
+        int added = entries.size();
+        int oldSize = size;
+        ensureCapacity(size + added);
+        for (Entry entry : entries) {
+            ids[size] = entry.getId();
+            if (order != ids) {
+                order[size] = entry.getId();
+            }
+            size++;
+        }
+        // The permutations no longer hold every id, the order shown keeps the new ids at its end until the next sort
+        sorted.clear();
+
+        beginChange();
+        if (reversed) {
+            nextAdd(0, added);
+        } else {
+            nextAdd(oldSize, size);
+        }
+        endChange();
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        List<Entry> removed = snapshot();
+        size = 0;
+        order = ids;
+        sortKey = null;
+        sorted.clear();
+        beginChange();
+        nextRemove(0, removed);
+        endChange();
+    }
+
+    /**
+     *
+     * @return the ids of the Entries in file order
+     */
+    public int[] getIds() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     *
+     * @return the id of the last Entry in file order, or -1 if the list is empty
+     */
+    public int lastId() {
+        return (size == 0) ? -1 : ids[size - 1];
+    }
+
+    /**
+     * Shows the Entries sorted by a key, sorting them the first time the key is used
+     *
+     * @param key   "Date" or "Type", or null for the order of the file
+     * @param index the index holding the keys of the Entries
+     */
+    public void sort(String key, EntryIndex index) {
+        List<Entry> before = snapshot();
+        if (key == null) {
+            order = ids;
+        } else {
+            int[] permutation = sorted.get(key);
+            if (permutation == null) {
+                permutation = Arrays.copyOf(ids, ids.length);
+                int[] sortedIds = Arrays.copyOf(ids, size);
+                if (key.equals("Date")) {
+                    EntrySorter.sortByDate(sortedIds, index);
+                } else if (key.equals("Type")) {
+                    EntrySorter.sortByType(sortedIds, index);
+                }
+                System.arraycopy(sortedIds, 0, permutation, 0, size);
+                sorted.put(key, permutation);
+            }
+            order = permutation;
+        }
+        sortKey = key;
+        fireReplaced(before);
+    }
+
+    /**
+     *
+     * @return the key the Entries are sorted by, or null if they are in the order of the file
+     */
+    public String getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isReversed() {
+        return reversed;
+    }
+
+    /**
+     * Shows the Entries in the opposite direction of their order, or in their order again
+     */
+    public void setReversed(boolean reversed) {
+        if (this.reversed == reversed) {
+            return;
+        }
+        List<Entry> before = snapshot();
+        this.reversed = reversed;
+        fireReplaced(before);
+    }
+
+    private void fireReplaced(List<Entry> before) {
+        if (size == 0) {
+            return;
+        }
+        beginChange();
+        nextReplace(0, size, before);
+        endChange();
+    }
+
+    /**
+     * @return the Entries as they are shown now, read from the arrays without copying them, for the
+     * removed items of a change. Listeners read them while the change is delivered, before any of the
+     * positions below the current size is written over.
+     */
+    private List<Entry> snapshot() {
+        final int[] shown = order;
+        final int count = size;
+        final boolean backwards = reversed;
+        return new AbstractList<Entry>() {
+            @Override
+            public Entry get(int index) {
+                return entriesById.get(shown[backwards ? count - 1 - index : index]);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int grown = Math.max(capacity, ids.length * 2);
+        boolean own = order == ids;
+        ids = Arrays.copyOf(ids, grown);
+        order = own ? ids : Arrays.copyOf(order, grown);
+    }
+}
@@ -0,0 +1,53 @@
+package log_parser;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The ids of the entries of a Log that are opened on the screen.
+ *
+ * Entries are closed unless the user opens them, so only the few that were opened are stored, and closing
+ * all of them costs as much as how many were opened instead of as much as the size of the log. EntryCells
+ * look the state of their entry up here whenever they are handed another entry while scrolling.
+ */
+public class ExpandedEntries {
+
+    private final Set<Integer> ids = new HashSet<>();
+
+    /**
+     *
+     * @return whether the entry @param id is opened
+     */
+    public boolean isExpanded(int id) {
+        return ids.contains(id);
+    }
+
+    public void setExpanded(int id, boolean expanded) {
+        if (expanded) {
+            ids.add(id);
+        } else {
+            ids.remove(id);
+        }
+    }
+
+    /**
+     *
+     * @return the number of entries opened
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Closes every entry
+     *
+     * @return true if any entry was opened
+     */
+    public boolean collapseAll() {
+        if (ids.isEmpty()) {
+            return false;
+        }
+        ids.clear();
+        return true;
+    }
+}
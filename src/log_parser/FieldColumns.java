@@ -0,0 +1,129 @@
+package log_parser;
+
+import java.util.Arrays;
+
+/**
+ * The fields a FieldExtractor pulled out of the entries of a log, stored column by column next to the
+ * EntryIndex. Every field has its own StringDictionary and a column holding one int code per entry, so
+ * filtering or grouping by a field compares ints in an array instead of searching the text of entries.
+ *
+ * Like the EntryIndex, columns are stored in fixed size pages and rows are only added by one thread at a
+ * time, in id order, while other threads read the rows below the size they were handed.
+ */
+public class FieldColumns {
+
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final String[] names;
+    private final StringDictionary[] dictionaries;
+    private int[][][] codes;
+    private volatile int size = 0;
+
+    /**
+     * @param names the names of the fields, in the order of their columns
+     */
+    public FieldColumns(String[] names) {
+        this.names = names.clone();
+        dictionaries = new StringDictionary[names.length];
+        codes = new int[names.length][16][];
+        for (int f = 0; f < names.length; f++) {
+            dictionaries[f] = new StringDictionary();
+        }
+    }
+
+    /**
+     *
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return names.length;
+    }
+
+    public String getName(int field) {
+        return names[field];
+    }
+
+    /**
+     *
+     * @param name the name of a field
+     * @return the column of the field called @param name, or -1 if there is none
+     */
+    public int getField(String name) {
+        for (int f = 0; f < names.length; f++) {
+            if (names[f].equalsIgnoreCase(name)) {
+                return f;
+            }
+        }
+        return -1;
+    }
+
+    public StringDictionary getDictionary(int field) {
+        return dictionaries[field];
+    }
+
+    /**
+     * Sets the fields of the next row
+     *
+     * @param id    the id of the row in the EntryIndex, rows without fields before it are filled with MISSING
+     * @param codes the code of every field in @param id, StringDictionary.MISSING where the field was not found
+     */
+    public void add(int id, int[] codes) {
+        int page = id >>> PAGE_BITS;
+        for (int f = 0; f < names.length; f++) {
+            int[][] pages = this.codes[f];
+            if (page >= pages.length) {
+                pages = Arrays.copyOf(pages, Math.max(pages.length * 2, page + 1));
+                this.codes[f] = pages;
+            }
+            for (int p = size >>> PAGE_BITS; p <= page; p++) {
+                if (pages[p] == null) {
+                    pages[p] = new int[PAGE_SIZE];
+                    Arrays.fill(pages[p], StringDictionary.MISSING);
+                }
+            }
+            pages[page][id & PAGE_MASK] = codes[f];
+        }
+        size = Math.max(size, id + 1);
+    }
+
+    /**
+     * Frees the pages holding only rows below an id, see EntryIndex.discard
+     */
+    public void discard(int id) {
+        for (int[][] pages : codes) {
+            for (int page = 0; page < (id >>> PAGE_BITS) && page < pages.length; page++) {
+                pages[page] = null;
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the number of rows, ids from here on have no fields yet
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *
+     * @return the code of @param field in row @param id, or StringDictionary.MISSING
+     */
+    public int getCode(int field, int id) {
+        if (id >= size) {
+            return StringDictionary.MISSING;
+        }
+        return codes[field][id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    /**
+     *
+     * @return the value of @param field in row @param id, or null
+     */
+    public String getValue(int field, int id) {
+        int code = getCode(field, id);
+        return (code == StringDictionary.MISSING) ? null : dictionaries[field].get(code);
+    }
+}
@@ -0,0 +1,188 @@
+package log_parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Pulls named fields such as the logger, IP address and account out of the first line of entries.
+ *
+ * The fields of each entry start format are configured as templates in FieldTemplates.txt: a field
+ * name and a regular expression whose first group is the value. Only the first MAX_LINE_LENGTH bytes
+ * of an entry are searched, since these fields are written on the line that starts it. An extractor
+ * is immutable and shared by the parser threads, each of which creates its own Matchers.
+ */
+public class FieldExtractor {
+
+    /**
+     * Number of bytes at the start of an entry the fields are searched in
+     */
+    public static final int MAX_LINE_LENGTH = 1024;
+
+    private static final String TEMPLATES = "FieldTemplates.txt";
+
+    private static List<String> allNames;
+
+    private final String[] names;
+    private final Pattern[] patterns;
+
+    private FieldExtractor(String[] names, Pattern[] patterns) {
+        this.names = names;
+        this.patterns = patterns;
+    }
+
+    /**
+     * @param detector the entry start format of a log
+     * @return the extractor configured for @param detector in FieldTemplates.txt, or null if it has no fields
+     */
+    public static FieldExtractor forFormat(EntryBoundaryDetector detector) {
+        try (InputStream in = FieldExtractor.class.getResourceAsStream(TEMPLATES)) {
+            return (in == null) ? null : parse(new InputStreamReader(in, StandardCharsets.UTF_8), detector.toString());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads the templates of one format
+     *
+     * @param templates the text of a template file
+     * @param format    the name of the format in brackets that starts its templates
+     * @return the extractor for @param format, or null if it has no templates
+     * @throws IOException if @param templates cannot be read
+     * @throws IllegalArgumentException if a template is not valid
+     */
+    public static FieldExtractor parse(Reader templates, String format) throws IOException {
+        List<String> names = new ArrayList<>();
+        List<Pattern> patterns = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(templates);
+        String section = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("[") && line.endsWith("]")) {
+                section = line.substring(1, line.length() - 1).trim();
+                continue;
+            }
+            String[] template = line.split("\\s+", 2);
+            if (template.length < 2) {
+                throw new IllegalArgumentException("Template without a pattern: " + line);
+            }
+            if (format == null || format.equals(section)) {
+                try {
+                    names.add(template[0]);
+                    patterns.add(Pattern.compile(template[1]));
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid template for " + template[0] + ": " + e.getDescription());
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            return null;
+        }
+        return new FieldExtractor(names.toArray(new String[0]), patterns.toArray(new Pattern[0]));
+    }
+
+    /**
+     *
+     * @return the names of the fields of every format, which are the field names a query can use
+     */
+    public static synchronized List<String> getAllNames() {
+        if (allNames == null) {
+            Set<String> names = new LinkedHashSet<>();
+            try (InputStream in = FieldExtractor.class.getResourceAsStream(TEMPLATES)) {
+                FieldExtractor all = (in == null) ? null : parse(new InputStreamReader(in, StandardCharsets.UTF_8), null);
+                if (all != null) {
+                    for (String name : all.names) {
+                        names.add(name.toLowerCase());
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                e.printStackTrace();
+            }
+            allNames = new ArrayList<>(names);
+        }
+        return allNames;
+    }
+
+    /**
+     *
+     * @return the names of the fields, in the order extract fills them in
+     */
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     *
+     * @return the templates as one line, which changes whenever a template does
+     */
+    public String getSignature() {
+        StringBuilder signature = new StringBuilder();
+        for (int f = 0; f < names.length; f++) {
+            signature.append(names[f]).append(' ').append(patterns[f].pattern()).append('\n');
+        }
+        return signature.toString();
+    }
+
+    /**
+     *
+     * @return one Matcher per field, for use by one thread
+     */
+    public Matcher[] newMatchers() {
+        Matcher[] matchers = new Matcher[patterns.length];
+        for (int f = 0; f < patterns.length; f++) {
+            matchers[f] = patterns[f].matcher("");
+        }
+        return matchers;
+    }
+
+    /**
+     * Finds the fields of one entry in the first line of its text
+     *
+     * @param source   the file of the entry
+     * @param offset   the offset of the entry in @param source
+     * @param length   the length of the entry
+     * @param buffer   a buffer of at least MAX_LINE_LENGTH bytes, reused between calls
+     * @param matchers Matchers returned by newMatchers
+     * @param values   receives the value of every field, or null where a field was not found
+     */
+    public void extract(MappedLogFile source, long offset, int length, byte[] buffer, Matcher[] matchers,
+                        String[] values) {
+        int count = Math.min(length, MAX_LINE_LENGTH);
+        source.get(offset, buffer, 0, count);
+        int end = 0;
+        while (end < count && buffer[end] != '\n' && buffer[end] != '\r') {
+            end++;
+        }
+        extract(new String(buffer, 0, end, source.getCharset()), matchers, values);
+    }
+
+    /**
+     * Finds the fields of one entry
+     *
+     * @param line     the start of the entry
+     * @param matchers Matchers returned by newMatchers
+     * @param values   receives the value of every field, or null where a field was not found
+     */
+    public void extract(CharSequence line, Matcher[] matchers, String[] values) {
+        for (int f = 0; f < matchers.length; f++) {
+            Matcher matcher = matchers[f].reset(line);
+            values[f] = (matcher.find() && matcher.groupCount() >= 1) ? matcher.group(1) : null;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package log_parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the entries of a list per value of a key, the type of the entries or one of their FieldColumns,
+ * to show which values are the most common.
+ *
+ * Keys are read from the index as ints, a type priority or a dictionary code, and counted in open addressing
+ * hash tables of primitive ints, so counting never reads the text of an entry or boxes a number. The ids are
+ * cut into chunks that are counted on the ParallelSearch pool, each into its own table, and the tables are
+ * merged. Ids added later, such as the entries appended to a followed file, are counted into the same table.
+ */
+public class GroupCounts {
+
+    /**
+     * The key that groups entries by their type, the other keys are the names of fields
+     */
+    public static final String TYPE = "Type";
+
+    /**
+     * Number of ids one task counts before the work is not split any further
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * The key of entries without a value
+     */
+    private static final int NONE = -1;
+
+    private final EntryIndex index;
+    private final String key;
+    private final int field;
+    private final FieldColumns fields;
+    private IntCounts counts = new IntCounts();
+    private int total = 0;
+
+    /**
+     * @param index the index holding the entries
+     * @param key   TYPE or the name of a field of @param index
+     */
+    public GroupCounts(EntryIndex index, String key) {
+        this.index = index;
+        this.key = key;
+        this.fields = index.getFields();
+        this.field = (TYPE.equals(key) || fields == null) ? -1 : fields.getField(key);
+        if (!TYPE.equals(key) && field == -1) {
+            throw new IllegalArgumentException("No field called " + key);
+        }
+    }
+
+    /**
+     *
+     * @param index an index
+     * @return the keys the entries of @param index can be grouped by
+     */
+    public static List<String> keys(EntryIndex index) {
+        List<String> keys = new ArrayList<>();
+        keys.add(TYPE);
+        FieldColumns fields = index.getFields();
+        if (fields != null) {
+            for (int f = 0; f < fields.getFieldCount(); f++) {
+                keys.add(fields.getName(f));
+            }
+        }
+        return keys;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Counts more entries
+     *
+     * @param ids   the ids of the entries
+     * @param count the number of ids to count
+     */
+    public void add(int[] ids, int count) {
+        counts.addAll(ParallelSearch.pool.invoke(new CountTask(ids, 0, count)));
+        total += count;
+    }
+
+    /**
+     *
+     * @return the number of entries counted
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     *
+     * @return the number of distinct values counted, entries without a value count as one
+     */
+    public int getDistinct() {
+        return counts.size();
+    }
+
+    /**
+     * @param n the most groups wanted
+     * @return the @param n values counted most often, from the most common down
+     */
+    public List<Group> top(int n) {
+        // Each count and the slot holding it are packed into a long, so selecting needs no objects. A heap of
+        // the n largest longs seen so far, smallest first, is all that is kept, so only the top n are sorted.
+        long[] heap = new long[Math.min(n, counts.size())];
+        int found = 0;
+        for (int slot = 0; slot < counts.keys.length && heap.length > 0; slot++) {
+            if (counts.keys[slot] != IntCounts.EMPTY) {
+                long packed = ((long) counts.counts[slot] << 32) | slot;
+                if (found < heap.length) {
+                    heap[found++] = packed;
+                    if (found == heap.length) {
+                        for (int i = heap.length / 2 - 1; i >= 0; i--) {
+                            siftDown(heap, i);
+                        }
+                    }
+                } else if (packed > heap[0]) {
+                    heap[0] = packed;
+                    siftDown(heap, 0);
+                }
+            }
+        }
+        Arrays.sort(heap, 0, found);
+        List<Group> top = new ArrayList<>(found);
+        for (int i = found - 1; i >= 0; i--) {
+            int slot = (int) heap[i];
+            top.add(new Group(valueOf(counts.keys[slot]), (int) (heap[i] >>> 32)));
+        }
+        return top;
+    }
+
+    /**
+     * Moves the long at @param i down a min-heap until neither of its children is smaller
+     */
+    private static void siftDown(long[] heap, int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heap.length && heap[left] < heap[smallest]) {
+                smallest = left;
+            }
+            if (right < heap.length && heap[right] < heap[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            long swap = heap[i];
+            heap[i] = heap[smallest];
+            heap[smallest] = swap;
+            i = smallest;
+        }
+    }
+
+    /**
+     * @return the int the entry @param id is grouped by
+     */
+    private int keyOf(int id) {
+        if (field == -1) {
+            byte type = index.getType(id);
+            return (type == EntryIndex.UNKNOWN_TYPE) ? NONE : type;
+        }
+        int code = fields.getCode(field, id);
+        return (code == StringDictionary.MISSING) ? NONE : code;
+    }
+
+    /**
+     * @return the value an int returned by keyOf stands for, or null for entries without a value
+     */
+    private String valueOf(int key) {
+        if (key == NONE) {
+            return null;
+        }
+        return (field == -1) ? EntryTypes.getEntryType(key) : fields.getDictionary(field).get(key);
+    }
+
+    /**
+     * One value and the number of entries that have it
+     */
+    public static class Group {
+        private final String value;
+        private final int count;
+
+        Group(String value, int count) {
+            this.value = value;
+            this.count = count;
+        }
+
+        /**
+         *
+         * @return the value, or null for the entries without one
+         */
+        public String getValue() {
+            return value;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Counts the ids from first up to last, splitting the range in half while it holds more than one chunk
+     */
+    @SuppressWarnings("serial")
+    private class CountTask extends RecursiveTask<IntCounts> {
+        private final int[] ids;
+        private final int first;
+        private final int last;
+
+        CountTask(int[] ids, int first, int last) {
+            this.ids = ids;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected IntCounts compute() {
+            if (last - first > CHUNK_SIZE) {
+                int middle = (first + last) >>> 1;
+                CountTask right = new CountTask(ids, middle, last);
+                right.fork();
+                IntCounts left = new CountTask(ids, first, middle).compute();
+                left.addAll(right.join());
+                return left;
+            }
+            IntCounts chunk = new IntCounts();
+            for (int i = first; i < last; i++) {
+                chunk.add(keyOf(ids[i]), 1);
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * A hash map from int keys to int counts with open addressing and linear probing
+     */
+    static class IntCounts {
+        static final int EMPTY = Integer.MIN_VALUE;
+
+        int[] keys = newKeys(16);
+        int[] counts = new int[16];
+        private int size = 0;
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        void add(int key, int count) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot] += count;
+            if (size * 2 > keys.length) {
+                grow();
+            }
+        }
+
+        void addAll(IntCounts other) {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.keys[slot] != EMPTY) {
+                    add(other.keys[slot], other.counts[slot]);
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = newKeys(oldKeys.length * 2);
+            counts = new int[oldKeys.length * 2];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != EMPTY) {
+                    add(oldKeys[slot], oldCounts[slot]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package log_parser;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+import java.util.List;
+
+/**
+ * The panel beside a Log's entries showing the most common values of the type or of a field among the
+ * entries shown, read from GroupCounts.
+ *
+ * Picking another key asks the listener to count again, and double clicking a value asks it to narrow
+ * the search down to the entries with that value.
+ */
+public class GroupView extends VBox {
+
+    /**
+     * Number of values shown
+     */
+    public static final int TOP_COUNT = 50;
+
+    /**
+     * Receives the keys and values the user picks
+     */
+    public interface Listener {
+        void keyChanged(String key);
+
+        void valuePicked(String key, String value);
+    }
+
+    private final ChoiceBox<String> keyBox = new ChoiceBox<>();
+    private final Label summary = new Label();
+    private final TableView<GroupCounts.Group> table = new TableView<>();
+    private boolean updatingKeys = false;
+
+    /**
+     * The counts to show at the next pulse, or null
+     */
+    private GroupCounts pending;
+    private final AnimationTimer pulse = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            GroupCounts counts = pending;
+            pending = null;
+            if (counts != null) {
+                List<GroupCounts.Group> top = counts.top(TOP_COUNT);
+                table.getItems().setAll(top);
+                summary.setText(String.format("%d entries, %d distinct values", counts.getTotal(), counts.getDistinct()));
+            }
+        }
+    };
+
+    /**
+     * @param listener receives the keys and values picked
+     */
+    public GroupView(Listener listener) {
+        super(4);
+        setPadding(new Insets(4));
+        setPrefWidth(280);
+
+        keyBox.setItems(FXCollections.observableArrayList(GroupCounts.TYPE));
+        keyBox.getSelectionModel().select(0);
+        keyBox.getSelectionModel().selectedItemProperty().addListener((observable, oldKey, newKey) -> {
+            if (!updatingKeys && newKey != null) {
+                listener.keyChanged(newKey);
+            }
+        });
+
+        TableColumn<GroupCounts.Group, String> valueColumn = new TableColumn<>("Value");
+        valueColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                (cell.getValue().getValue() == null) ? "(none)" : cell.getValue().getValue()));
+        valueColumn.setPrefWidth(180);
+        TableColumn<GroupCounts.Group, Number> countColumn = new TableColumn<>("Count");
+        countColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getCount()));
+        countColumn.setPrefWidth(70);
+        table.getColumns().add(valueColumn);
+        table.getColumns().add(countColumn);
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        table.setRowFactory(view -> {
+            TableRow<GroupCounts.Group> row = new TableRow<>();
+            row.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && !row.isEmpty() && row.getItem().getValue() != null) {
+                    listener.valuePicked(getKey(), row.getItem().getValue());
+                }
+            });
+            return row;
+        });
+        Tooltip.install(table, new Tooltip("Double click a value to search for its entries"));
+        VBox.setVgrow(table, Priority.ALWAYS);
+
+        getChildren().addAll(keyBox, summary, table);
+    }
+
+    /**
+     *
+     * @return the key picked
+     */
+    public String getKey() {
+        String key = keyBox.getSelectionModel().getSelectedItem();
+        return (key == null) ? GroupCounts.TYPE : key;
+    }
+
+    /**
+     * Offers other keys, keeping the one picked if it is still offered
+     */
+    public void setKeys(List<String> keys) {
+        if (keys.equals(keyBox.getItems())) {
+            return;
+        }
+        String key = getKey();
+        updatingKeys = true;
+        keyBox.getItems().setAll(keys);
+        keyBox.getSelectionModel().select(keys.contains(key) ? key : GroupCounts.TYPE);
+        updatingKeys = false;
+    }
+
+    /**
+     * Shows the most common values of counts, called whenever entries were counted. The values are picked
+     * at the next pulse, once however many batches were counted before it.
+     */
+    public void show(GroupCounts counts) {
+        pending = counts;
+        pulse.start();
+    }
+}
@@ -0,0 +1,227 @@
+package log_parser;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * The strip above a Log's entries showing how many entries were written over time, stacked by type.
+ *
+ * Bars are read from a TimeHistogram at the finest bucket width that fits the width of the strip, so
+ * drawing never touches the entries. Clicking a bar asks the listener to jump to its entries, dragging
+ * across bars asks it to show only the entries of that range, and a right click asks it to show all
+ * entries again.
+ */
+public class HistogramView extends Pane {
+
+    private static final double HEIGHT = 56;
+    private static final double LABEL_HEIGHT = 12;
+    private static final double MIN_BAR_WIDTH = 3;
+
+    /**
+     * Colors of the types in EntryTypes.txt, the same as their entries' style sheets
+     */
+    private static final String[][] TYPE_COLORS = {
+            {"ERROR", "#FC9090"}, {"WARN", "#FFD79E"}, {"INFO", "#A6D8F7"}, {"DEBUG", "#D9B9FA"}
+    };
+    private static final Color OTHER_COLOR = Color.web("#C8C8C8");
+    private static final Color SELECTION_COLOR = Color.web("#3875D7", 0.25);
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneOffset.UTC);
+
+    /**
+     * Receives the ranges the user picks, in milliseconds since the epoch
+     */
+    public interface Listener {
+        void rangeClicked(long from, long to);
+
+        void rangeSelected(long from, long to);
+
+        void selectionCleared();
+    }
+
+    private final Canvas canvas = new Canvas();
+    private final Listener listener;
+    private TimeHistogram histogram;
+
+    // The bars as last drawn
+    private long width;
+    private long firstBucket;
+    private int bucketCount;
+
+    private double dragStart = -1;
+    private double dragEnd = -1;
+    private long selectedFrom = Long.MIN_VALUE;
+    private long selectedTo = Long.MIN_VALUE;
+
+    /**
+     * @param histogram the counts to show
+     * @param listener  receives the ranges clicked or selected
+     */
+    public HistogramView(TimeHistogram histogram, Listener listener) {
+        this.histogram = histogram;
+        this.listener = listener;
+        getChildren().add(canvas);
+        setPrefHeight(HEIGHT);
+        setMinHeight(HEIGHT);
+        setMaxWidth(1020);
+        canvas.setHeight(HEIGHT);
+        canvas.widthProperty().bind(widthProperty());
+        canvas.widthProperty().addListener((observable, oldWidth, newWidth) -> redraw());
+        Tooltip.install(this, new Tooltip("Click to jump to a time, drag to show a range, right click to show all"));
+
+        setOnMousePressed(e -> {
+            if (e.getButton() == MouseButton.PRIMARY) {
+                dragStart = e.getX();
+                dragEnd = e.getX();
+            }
+        });
+        setOnMouseDragged(e -> {
+            if (dragStart >= 0) {
+                dragEnd = Math.max(0, Math.min(getWidth(), e.getX()));
+                redraw();
+            }
+        });
+        setOnMouseReleased(e -> {
+            if (e.getButton() == MouseButton.SECONDARY) {
+                clearSelection();
+                listener.selectionCleared();
+            } else if (dragStart >= 0 && bucketCount > 0) {
+                int first = bucketAt(Math.min(dragStart, dragEnd));
+                int last = bucketAt(Math.max(dragStart, dragEnd));
+                long from = (firstBucket + first) * width;
+                long to = (firstBucket + last + 1) * width;
+                if (Math.abs(dragEnd - dragStart) < MIN_BAR_WIDTH) {
+                    listener.rangeClicked(from, to);
+                } else {
+                    selectedFrom = from;
+                    selectedTo = to;
+                    listener.rangeSelected(from, to);
+                }
+            }
+            dragStart = -1;
+            redraw();
+        });
+    }
+
+    /**
+     * Shows other counts, after the log was read again
+     */
+    public void setHistogram(TimeHistogram histogram) {
+        this.histogram = histogram;
+        clearSelection();
+    }
+
+    /**
+     * Forgets the range selected by dragging, without telling the listener
+     */
+    public void clearSelection() {
+        selectedFrom = Long.MIN_VALUE;
+        selectedTo = Long.MIN_VALUE;
+        redraw();
+    }
+
+    /**
+     * @param x a position on the strip
+     * @return the bar at @param x
+     */
+    private int bucketAt(double x) {
+        return (int) Math.max(0, Math.min(bucketCount - 1, x * bucketCount / getWidth()));
+    }
+
+    /**
+     * Draws the bars again from the histogram, called whenever entries were counted
+     */
+    public void redraw() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        double w = canvas.getWidth();
+        g.clearRect(0, 0, w, HEIGHT);
+        if (histogram.getTotal() == 0 || w < MIN_BAR_WIDTH) {
+            bucketCount = 0;
+            return;
+        }
+
+        long start = histogram.getStart();
+        long end = histogram.getEnd();
+        width = histogram.bucketWidth(start, end, (int) (w / MIN_BAR_WIDTH));
+        if (width == -1) {
+            bucketCount = 0;
+            return;
+        }
+        firstBucket = Math.floorDiv(start, width);
+        bucketCount = (int) (Math.floorDiv(end, width) - firstBucket + 1);
+        int[] counts = new int[bucketCount * TimeHistogram.TYPE_COLUMNS];
+        histogram.counts(width, firstBucket, counts);
+
+        int max = 1;
+        for (int b = 0; b < bucketCount; b++) {
+            int sum = 0;
+            for (int c = 0; c < TimeHistogram.TYPE_COLUMNS; c++) {
+                sum += counts[b * TimeHistogram.TYPE_COLUMNS + c];
+            }
+            max = Math.max(max, sum);
+        }
+
+        Color[] colors = columnColors();
+        double barsHeight = HEIGHT - LABEL_HEIGHT;
+        double barWidth = w / bucketCount;
+        for (int b = 0; b < bucketCount; b++) {
+            double y = barsHeight;
+            for (int c = 0; c < TimeHistogram.TYPE_COLUMNS; c++) {
+                int count = counts[b * TimeHistogram.TYPE_COLUMNS + c];
+                if (count > 0) {
+                    double h = Math.max(1, count * (barsHeight - 2) / max);
+                    g.setFill(colors[c]);
+                    g.fillRect(b * barWidth, y - h, Math.max(1, barWidth - 1), h);
+                    y -= h;
+                }
+            }
+        }
+
+        // The range being dragged over, or the one selected last
+        double from = -1;
+        double to = -1;
+        if (dragStart >= 0 && dragEnd != dragStart) {
+            from = Math.min(dragStart, dragEnd);
+            to = Math.max(dragStart, dragEnd);
+        } else if (selectedFrom != Long.MIN_VALUE) {
+            from = (selectedFrom / (double) width - firstBucket) * barWidth;
+            to = (selectedTo / (double) width - firstBucket) * barWidth;
+        }
+        if (to > from) {
+            g.setFill(SELECTION_COLOR);
+            g.fillRect(from, 0, to - from, barsHeight);
+        }
+
+        DateTimeFormatter format = (end - start >= 24 * 60 * 60 * 1000L) ? DATE_TIME : TIME;
+        g.setFill(Color.GRAY);
+        g.fillText(format.format(Instant.ofEpochMilli(start)), 2, HEIGHT - 1);
+        String last = format.format(Instant.ofEpochMilli(end));
+        g.fillText(last, Math.max(0, w - 7 * last.length() - 2), HEIGHT - 1);
+    }
+
+    /**
+     * @return the color of every count column of the histogram
+     */
+    private static Color[] columnColors() {
+        Color[] colors = new Color[TimeHistogram.TYPE_COLUMNS];
+        for (int c = 0; c < colors.length; c++) {
+            colors[c] = OTHER_COLOR;
+        }
+        for (String[] typeColor : TYPE_COLORS) {
+            int priority = EntryTypes.getTypePriority(typeColor[0]);
+            if (priority >= 0 && priority < TimeHistogram.TYPE_COLUMNS - 1) {
+                colors[TimeHistogram.column((byte) priority)] = Color.web(typeColor[1]);
+            }
+        }
+        return colors;
+    }
+}
@@ -0,0 +1,401 @@
+package log_parser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A binary copy of the EntryIndex rows of a log file, and optionally of its TokenIndex, kept in a cache
+ * directory so that a file that was read before does not have to be parsed again.
+ *
+ * The sidecar records the size and modification time of the file it was written for, and a CRC32 of
+ * HASH_LENGTH bytes at the head and at the tail of the file. A file of the same size and time whose head
+ * and tail still hash the same is taken from the sidecar as it is. A file that has grown, and whose head
+ * and old tail still hash the same, had entries appended: the rows of the sidecar are used and only the
+ * bytes from the start of its last entry onwards are parsed. Any other file is parsed from its start.
+ *
+ * Rows are stored column by column, so reading a sidecar is a few bulk copies out of a buffer. The sidecar
+ * is read into the heap rather than mapped: a mapped file cannot be replaced on Windows, and a sidecar that
+ * was used for a grown file is written again once the appended part has been parsed.
+ * Type ordinals depend on the order types were first seen in the running application, so the names of
+ * the types are stored with the sidecar and mapped back to the current ordinals when it is read. The
+ * same goes for the codes of the FieldColumns, whose dictionaries are stored ahead of the rows. A sidecar
+ * written with other field templates does not fit.
+ */
+public class IndexSidecar {
+
+    /**
+     * The folder sidecars are written to by default
+     */
+    public static final File DEFAULT_DIRECTORY =
+            new File(System.getProperty("user.home"), ".prettylogparser" + File.separator + "index");
+
+    /**
+     * Number of bytes hashed at the head and at the tail of a file
+     */
+    static final int HASH_LENGTH = 64 * 1024;
+
+    private static final int MAGIC = 0x504C4958;
+    private static final int VERSION = 2;
+
+    /**
+     * Number of rows copied out of the sidecar at a time
+     */
+    private static final int CHUNK_SIZE = LogLoader.BATCH_SIZE;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final long size;
+    private final int rowCount;
+    private final byte[] typeMap;
+    private final String[][] fieldValues;
+    private final int rowsStart;
+    private final int tokensStart;
+
+    private IndexSidecar(File file, ByteBuffer buffer, long size, int rowCount, byte[] typeMap,
+                         String[][] fieldValues, int rowsStart, int tokensStart) {
+        this.file = file;
+        this.buffer = buffer;
+        this.size = size;
+        this.rowCount = rowCount;
+        this.typeMap = typeMap;
+        this.fieldValues = fieldValues;
+        this.rowsStart = rowsStart;
+        this.tokensStart = tokensStart;
+    }
+
+    /**
+     *
+     * @param directory the folder sidecars are kept in
+     * @param log       a log file
+     * @return the sidecar of @param log in @param directory, which may not exist yet
+     */
+    public static File location(File directory, File log) {
+        String path = log.getAbsolutePath();
+        return new File(directory, log.getName() + "-" + Integer.toHexString(path.hashCode()) + ".idx");
+    }
+
+    /**
+     * Opens the sidecar of a log file, if there is one that still fits the file
+     *
+     * @param directory  the folder sidecars are kept in
+     * @param log        the mapping of the log file as it is now
+     * @param detector   the detector the file is split with, a sidecar written with another one does not fit
+     * @param extractor  the extractor of the fields of the entries, or null if they have none
+     * @param withTokens true if the token index is needed, a sidecar without one does not fit
+     * @return the sidecar, or null if there is none that can be used
+     */
+    public static IndexSidecar open(File directory, MappedLogFile log, EntryBoundaryDetector detector,
+                                    FieldExtractor extractor, boolean withTokens) {
+        File sidecar = location(directory, log.getFile());
+        if (!sidecar.isFile() || sidecar.length() > Integer.MAX_VALUE) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(sidecar, "r");
+             FileChannel channel = raf.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Reads until the buffer is full
+            }
+            buffer.flip();
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long size = buffer.getLong();
+            long modified = buffer.getLong();
+            long headHash = buffer.getLong();
+            long tailHash = buffer.getLong();
+            String detectorName = readString(buffer);
+            String signature = readString(buffer);
+            if (!detectorName.equals(detectorName(detector))
+                    || !signature.equals(signature(extractor))
+                    || log.size() < size
+                    || (log.size() == size && log.getFile().lastModified() != modified)
+                    || hash(log, 0, Math.min(size, HASH_LENGTH)) != headHash
+                    || hash(log, Math.max(0, size - HASH_LENGTH), size) != tailHash) {
+                return null;
+            }
+
+            // Types are stored by name, ordinal i of the sidecar is typeMap[i] now
+            byte[] typeMap = new byte[buffer.getInt()];
+            for (int i = 0; i < typeMap.length; i++) {
+                typeMap[i] = LogLoader.typePriority(readString(buffer));
+            }
+            String[][] fieldValues = new String[buffer.getInt()][];
+            for (int f = 0; f < fieldValues.length; f++) {
+                fieldValues[f] = new String[buffer.getInt()];
+                for (int code = 0; code < fieldValues[f].length; code++) {
+                    fieldValues[f][code] = readString(buffer);
+                }
+            }
+            int rowCount = buffer.getInt();
+            int tokensStart = buffer.getInt();
+            if ((withTokens && tokensStart == -1) || rowCount == 0) {
+                return null;
+            }
+            return new IndexSidecar(sidecar, buffer, size, rowCount, typeMap, fieldValues, buffer.position(),
+                    tokensStart);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            // A damaged sidecar is written again once the file has been parsed
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     *
+     * @return the size of the log file when the sidecar was written
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     *
+     * @return the number of rows in the sidecar
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     *
+     * @return the offset of the last entry of the sidecar, which may have grown since the sidecar was written
+     */
+    public long getLastOffset() {
+        return buffer.getLong(rowsStart + 8 * (rowCount - 1));
+    }
+
+    /**
+     * Copies rows of the sidecar into an index
+     *
+     * @param index    the index to add the rows to
+     * @param source   the source number of the log file in @param index
+     * @param count    the number of rows to add, starting from the first
+     * @param listener receives the ids of the added rows, a chunk at a time
+     */
+    public void readRows(EntryIndex index, int source, int count, LogLoader.Listener listener) {
+        ByteBuffer rows = buffer.duplicate();
+        rows.position(rowsStart);
+        LongBuffer offsets = rows.slice().asLongBuffer();
+        rows.position(rowsStart + 8 * rowCount);
+        IntBuffer lengths = rows.slice().asIntBuffer();
+        rows.position(rowsStart + 12 * rowCount);
+        LongBuffer timestamps = rows.slice().asLongBuffer();
+        rows.position(rowsStart + 20 * rowCount);
+        ByteBuffer types = rows.slice();
+        types.limit(rowCount);
+
+        // Field codes of the sidecar are interned again, code c of field f is codeMaps[f][c] now
+        FieldColumns fields = index.getFields();
+        if (fields != null && fields.getFieldCount() != fieldValues.length) {
+            fields = null;
+        }
+        int fieldCount = (fields != null) ? fieldValues.length : 0;
+        IntBuffer[] codes = new IntBuffer[fieldCount];
+        int[][] codeMaps = new int[fieldCount][];
+        for (int f = 0; f < fieldCount; f++) {
+            rows.position(rowsStart + (21 + 4 * f) * rowCount);
+            codes[f] = rows.slice().asIntBuffer();
+            codeMaps[f] = new int[fieldValues[f].length];
+            for (int code = 0; code < codeMaps[f].length; code++) {
+                codeMaps[f][code] = fields.getDictionary(f).intern(fieldValues[f][code]);
+            }
+        }
+
+        long[] chunkOffsets = new long[CHUNK_SIZE];
+        int[] chunkLengths = new int[CHUNK_SIZE];
+        long[] chunkTimestamps = new long[CHUNK_SIZE];
+        byte[] chunkTypes = new byte[CHUNK_SIZE];
+        int[][] chunkCodes = new int[fieldCount][CHUNK_SIZE];
+        int[] rowCodes = new int[fieldCount];
+        for (int first = 0; first < count; first += CHUNK_SIZE) {
+            int n = Math.min(CHUNK_SIZE, count - first);
+            offsets.get(chunkOffsets, 0, n);
+            lengths.get(chunkLengths, 0, n);
+            timestamps.get(chunkTimestamps, 0, n);
+            types.get(chunkTypes, 0, n);
+            for (int f = 0; f < fieldCount; f++) {
+                codes[f].get(chunkCodes[f], 0, n);
+            }
+            int firstId = index.size();
+            for (int i = 0; i < n; i++) {
+                byte type = chunkTypes[i];
+                int id = index.add(source, chunkOffsets[i], chunkLengths[i], chunkTimestamps[i],
+                        (type == EntryIndex.UNKNOWN_TYPE) ? type : typeMap[type]);
+                if (fields != null) {
+                    for (int f = 0; f < fieldCount; f++) {
+                        int code = chunkCodes[f][i];
+                        rowCodes[f] = (code == StringDictionary.MISSING) ? code : codeMaps[f][code];
+                    }
+                    fields.add(id, rowCodes);
+                }
+            }
+            listener.entriesParsed(firstId, n);
+        }
+    }
+
+    /**
+     * Fills an empty token index with the tokens of the sidecar, which cover all of its rows
+     */
+    public void readTokens(TokenIndex tokens) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(tokensStart);
+        tokens.read(in);
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+
+    /**
+     * Writes the sidecar of a log file that has been read completely. The sidecar is written to a
+     * temporary file first, so a reader never sees half of it.
+     *
+     * @param directory the folder sidecars are kept in
+     * @param log       the mapping the rows were read from
+     * @param index     the index holding the rows
+     * @param source    the source number of @param log in @param index
+     * @param detector  the detector the file was split with
+     * @param extractor the extractor the fields of the rows were found with, or null
+     * @param tokens    the token index of the rows, or null
+     * @throws IOException if the sidecar cannot be written
+     */
+    public static void write(File directory, MappedLogFile log, EntryIndex index, int source,
+                             EntryBoundaryDetector detector, FieldExtractor extractor, TokenIndex tokens)
+            throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File sidecar = location(directory, log.getFile());
+        File temporary = File.createTempFile(sidecar.getName(), ".tmp", directory);
+        try {
+            int[] ids = ids(index, source);
+            long size = log.size();
+            FieldColumns fields = (extractor != null) ? index.getFields() : null;
+            int fieldCount = (fields != null) ? fields.getFieldCount() : 0;
+
+            // Every sidecar ordinal names a type of the running application
+            List<String> typeNames = new ArrayList<>();
+            for (int id : ids) {
+                byte type = index.getType(id);
+                while (type >= typeNames.size()) {
+                    typeNames.add(EntryTypes.getEntryType(typeNames.size()));
+                }
+            }
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(size);
+                out.writeLong(log.getFile().lastModified());
+                out.writeLong(hash(log, 0, Math.min(size, HASH_LENGTH)));
+                out.writeLong(hash(log, Math.max(0, size - HASH_LENGTH), size));
+                writeString(out, detectorName(detector));
+                writeString(out, (fields != null) ? signature(extractor) : "");
+                out.writeInt(typeNames.size());
+                for (String type : typeNames) {
+                    writeString(out, type);
+                }
+                out.writeInt(fieldCount);
+                for (int f = 0; f < fieldCount; f++) {
+                    StringDictionary dictionary = fields.getDictionary(f);
+                    int values = dictionary.size();
+                    out.writeInt(values);
+                    for (int code = 0; code < values; code++) {
+                        writeString(out, dictionary.get(code));
+                    }
+                }
+                out.writeInt(ids.length);
+                int rowsStart = out.size() + 4;
+                long tokensStart = rowsStart + (21L + 4L * fieldCount) * ids.length;
+                out.writeInt((tokens == null || tokensStart > Integer.MAX_VALUE) ? -1 : (int) tokensStart);
+
+                for (int id : ids) {
+                    out.writeLong(index.getOffset(id));
+                }
+                for (int id : ids) {
+                    out.writeInt(index.getLength(id));
+                }
+                for (int id : ids) {
+                    out.writeLong(index.getTimestamp(id));
+                }
+                for (int id : ids) {
+                    out.writeByte(index.getType(id));
+                }
+                for (int f = 0; f < fieldCount; f++) {
+                    for (int id : ids) {
+                        out.writeInt(fields.getCode(f, id));
+                    }
+                }
+                if (tokens != null && tokensStart <= Integer.MAX_VALUE) {
+                    tokens.write(out);
+                }
+            }
+            Files.move(temporary.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+    }
+
+    /**
+     * @return the ids of the rows of @param index read from @param source, in file order
+     */
+    private static int[] ids(EntryIndex index, int source) {
+        int[] ids = new int[index.size()];
+        int count = 0;
+        for (int id = 0; id < ids.length; id++) {
+            if (index.getSourceNumber(id) == source) {
+                ids[count++] = id;
+            }
+        }
+        return (count == ids.length) ? ids : Arrays.copyOf(ids, count);
+    }
+
+    private static String detectorName(EntryBoundaryDetector detector) {
+        return detector.getClass().getName() + "." + detector;
+    }
+
+    private static String signature(FieldExtractor extractor) {
+        return (extractor == null) ? "" : extractor.getSignature();
+    }
+
+    /**
+     * @return the CRC32 of the bytes of @param log from @param start up to @param end
+     */
+    private static long hash(MappedLogFile log, long start, long end) {
+        byte[] bytes = new byte[(int) (end - start)];
+        log.get(start, bytes, 0, bytes.length);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
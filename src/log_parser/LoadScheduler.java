@@ -0,0 +1,148 @@
+package log_parser;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Shares the disk and the processors between the LogLoaders of all files being opened, so that opening many
+ * files at once reads and parses them side by side without the files competing for the disk.
+ *
+ * Reading is limited separately from parsing. A thread reading a file, or a range of a large file, first
+ * takes one of a limited number of disk readers and hands it back as soon as it has read its part; the
+ * parsing of what it read runs on a fixed pool of parser threads that every load shares. An SSD serves
+ * several readers at once, while a spinning disk is fastest with a single reader that does not make it
+ * seek between files.
+ *
+ * The limits are read from system properties when the first file is opened:
+ * <pre>
+ * -Dprettylogparser.readers=ssd|hdd|n   disk readers, SSD_READERS for ssd (the default) and 1 for hdd
+ * -Dprettylogparser.parsers=n           parser threads, one per processor by default
+ * </pre>
+ */
+public class LoadScheduler {
+
+    /**
+     * Number of disk readers used for an SSD
+     */
+    public static final int SSD_READERS = 4;
+
+    /**
+     * Number of disk readers used for a spinning disk
+     */
+    public static final int SPINNING_DISK_READERS = 1;
+
+    public static final String READERS_PROPERTY = "prettylogparser.readers";
+    public static final String PARSERS_PROPERTY = "prettylogparser.parsers";
+
+    private static LoadScheduler shared;
+
+    private final ExecutorService parsers;
+    private final int parserThreads;
+    private int readerLimit;
+    private int activeReaders = 0;
+
+    /**
+     * @param readers the number of threads that can read from disk at the same time
+     * @param parsers the number of threads parsing what was read
+     */
+    public LoadScheduler(int readers, int parsers) {
+        if (readers < 1 || parsers < 1) {
+            throw new IllegalArgumentException("A scheduler needs at least one reader and one parser");
+        }
+        this.readerLimit = readers;
+        this.parserThreads = parsers;
+        this.parsers = Executors.newFixedThreadPool(parsers, LogLoader.daemonThreads("log-parser"));
+    }
+
+    /**
+     *
+     * @return the scheduler shared by all loads, configured from the system properties
+     */
+    public static synchronized LoadScheduler getShared() {
+        if (shared == null) {
+            shared = new LoadScheduler(readersFor(System.getProperty(READERS_PROPERTY, "ssd")),
+                    Integer.getInteger(PARSERS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+        }
+        return shared;
+    }
+
+    /**
+     * @param disk "ssd", "hdd" or a number of readers
+     * @return the number of disk readers to use for @param disk
+     */
+    static int readersFor(String disk) {
+        if (disk.equalsIgnoreCase("ssd")) {
+            return SSD_READERS;
+        } else if (disk.equalsIgnoreCase("hdd")) {
+            return SPINNING_DISK_READERS;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(disk.trim()));
+        } catch (NumberFormatException e) {
+            return SSD_READERS;
+        }
+    }
+
+    /**
+     * Changes the number of disk readers. Readers already reading keep their place, new ones wait until
+     * fewer than @param readers are reading.
+     */
+    public synchronized void setReaderLimit(int readers) {
+        readerLimit = Math.max(1, readers);
+        notifyAll();
+    }
+
+    public synchronized int getReaderLimit() {
+        return readerLimit;
+    }
+
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    /**
+     * Waits until a disk reader is free and takes it
+     *
+     * @return the reader, which is handed back by closing it
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public DiskReader startReading() throws InterruptedException {
+        synchronized (this) {
+            while (activeReaders >= readerLimit) {
+                wait();
+            }
+            activeReaders++;
+        }
+        return new DiskReader();
+    }
+
+    /**
+     * Queues work on the parser threads
+     */
+    public <T> Future<T> parse(Callable<T> task) {
+        return parsers.submit(task);
+    }
+
+    private synchronized void stopReading() {
+        activeReaders--;
+        notifyAll();
+    }
+
+    /**
+     * A disk reader taken by startReading. Closing it more than once hands it back only once, so a thread
+     * can hand it back early and still close it in a finally block or try-with-resources statement.
+     */
+    public class DiskReader implements AutoCloseable {
+        private boolean closed = false;
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                stopReading();
+            }
+        }
+    }
+}
@@ -1,336 +1,862 @@
-package log_parser;
-
-import javafx.beans.value.ChangeListener;
-import javafx.beans.value.ObservableValue;
-import javafx.scene.control.ScrollPane;
-import javafx.scene.control.Tab;
-import javafx.scene.layout.VBox;
-import javafx.stage.Stage;
-
-import java.awt.*;
-import java.io.*;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-
-/**
- * Created by Nicholas Ostaffe on 6/23/2016.
- * Represents one file that has been opened in the program and begins the dynamic creation of FX objects.
- *
- * FXML Hierarchy: TabPane -> Tabs -> ScrollPane -> VBox -> TitledPanes -> TextAreas
- *
- * Content of a Tab is encompassed in a Log object, which handles searching, sorting, and creation of entries.
- * Furthermore, Log is responsible for reading in the file chosen and parsing new entries.
- */
-public class Log {
-
-	private String name;
-	private List<Entry> entryList = new LinkedList<>();
-    private List<Entry> currentList = entryList;
-    private static List<String> entryTypes = new ArrayList<>();
-    private final File file;
-	private boolean isReversed = false;
-
-	public static final int INITIAL_LOG_COUNT = 50;
-	public static final int INCREMENTAL_LOG_COUNT = 20;
-	private BufferedReader reader;
-	private int rowCount = 0;
-
-	private static Stage stage = Main.getStage();
-	private Tab t;
-	private VBox v;
-	private ScrollPane sp;
-
-
-	public Log(String name, File file) {
-		this.name = name;
-        this.file = file;
-		t = new Tab(name);
-		v = new VBox();
-		sp = new ScrollPane();
-		setScrollPaneProperties();
-		setTabProperties();
-		readInFile();
-        stage.show();
-    }
-
-	/**
-	 *
-	 * @param type represents a type for a given Entry
-	 * @return the index(representing a priority level) of the type
-	 */
-	public static int getTypePriority(String type) {
-		return entryTypes.indexOf(type);
-	}
-
-    /**
-     * Only add unique types to the List. This list is created to manage the priority of certain
-     * entry types so there is a known way to sort them by type later.
-     * @param type is the Type to be added to the local List
-     */
-	public static void addEntryType(String type) {
-		if (!entryTypes.contains(type)) {
-			entryTypes.add(type);
-		}
-	}
-
-	/**
-	 * Adds @param entry to the local log
-	 * 
-	 * @param entry to add the entryList
-	 */
-	public void addEntry(Entry entry) {
-		this.entryList.add(entry);
-	}
-
-	/**
-	 *
-	 * @return the title of the log
-	 */
-	public String getName() {
-		return name;
-	}
-
-	/**
-	 *
-	 * @return the list of all Entries in the log
-	 */
-	public List<Entry> getEntryList() {
-		return entryList;
-	}
-
-	/**
-	 * Searches Entries with AND/OR logic and adds them to an ArrayList to
-	 * return
-	 * 
-	 * @param keyword to search for
-	 * @return an ArrayList Entries that had word(s) matching the keyword
-	 */
-	public List<Entry> search(String keyword) {
-		LinkedList<Entry> ret = new LinkedList<>();
-		String keywords[] = null;
-
-		if(keyword.equals("")) {
-			currentList = entryList;
-			return entryList;
-		}
-
-		// Ensure all keywords are present in the entry if AND logic is found
-		if (keyword.contains("AND(")) {
-			int size = keyword.split("AND\\(")[1].split(",").length;
-			keywords = new String[size];
-			for (int i = 0; i < keywords.length - 1; i++) {
-				keywords[i] = keyword.split("AND\\(")[1].split(",")[i];
-			}
-			keywords[size - 1] = keyword.split("AND\\(")[1].split(",")[size - 1].replace(")", "");
-
-			int containCount = 0;
-			for (Entry e : entryList) {
-				for (int i = 0; i < keywords.length; i++) {
-					if (e.getEntry().toLowerCase().contains(keywords[i].toLowerCase())) {
-						containCount++;
-					}
-				}
-				if (containCount == size) {
-					ret.add(e);
-				}
-				containCount = 0;
-			}
-		}
-
-		// Ensure at least one keyword is present in the entry if OR logic is
-		// found
-		else if (keyword.contains("OR(")) {
-			int size = keyword.split("OR\\(")[1].split(",").length;
-			keywords = new String[size];
-			for (int i = 0; i < keywords.length - 1; i++) {
-				keywords[i] = keyword.split("OR\\(")[1].split(",")[i];
-			}
-			keywords[size - 1] = keyword.split("OR\\(")[1].split(",")[size - 1].replace(")", "");
-
-			boolean containFlag = false;
-			for (Entry e : entryList) {
-				for (int i = 0; i < keywords.length; i++) {
-					if (e.getEntry().toLowerCase().contains(keywords[i].toLowerCase())) {
-						containFlag = true;
-					}
-				}
-				if (containFlag) {
-					ret.add(e);
-				}
-				containFlag = false;
-			}
-		}
-		// search on the raw string
-		else {
-			for (Entry e : entryList) {
-				if (e.getEntry().toLowerCase().contains(keyword.toLowerCase())) {
-					ret.add(e);
-				}
-			}
-		}
-        this.currentList = ret;
-		return ret;
-	}
-
-    /**
-     * Responsible for detecting new entries in the file selected and adds them to
-     * this Log's local list of Entries.
-     */
-	private void readInFile() {
-		// open the file
-        try {
-            rowCount = 0;
-            reader = new BufferedReader(new FileReader(file));
-
-            boolean firstLoop = true;
-            String currentLine = "";
-            String builtLine = "";
-            // read until end of file
-            while ((currentLine = reader.readLine()) != null) {
-
-                // populate builtLine on first cycle
-                if (firstLoop) {
-                    builtLine = currentLine;
-                }
-
-                // Checks that currentLine has a format: "Number-Number-Number"
-                if (currentLine.length() >= 10 && currentLine.substring(0, 10).matches("([0-9]+-+[0-9]+-+[0-9]+)+")) {
-                    Entry entry = new Entry(builtLine);
-                    this.addEntry(entry);
-
-                    if (rowCount <= INITIAL_LOG_COUNT) {
-                        rowCount++;
-                        if (!entry.isVisible()) {
-                            v.getChildren().add(entry.getTitledPane());
-                            entry.setVisible(true);
-                        }
-                        stage.show();
-                    }
-                    if (firstLoop) {
-                        currentLine = reader.readLine();
-                        firstLoop = false;
-                    }
-
-                    builtLine = "";
-                }
-                builtLine += currentLine + System.lineSeparator();
-            }
-
-            // Catch the last line of the entry
-            // Checks that builtLine has a format: "Number-Number-Number"
-            if (builtLine.length() >= 10 && builtLine.substring(0, 10).matches("([0-9]+-+[0-9]+-+[0-9]+)+")) {
-                Entry entry = new Entry(builtLine);
-                addEntry(entry);
-                if (rowCount <= INITIAL_LOG_COUNT) {
-                    rowCount++;
-                    if (!entry.isVisible()) {
-                        v.getChildren().add(entry.getTitledPane());
-                        entry.setVisible(true);
-                    }
-                    stage.show();
-                }
-            }
-
-        }
-		catch (Exception ex) {
-            ex.printStackTrace();
-        }
-	}
-
-    /**
-     * Sets up an event which is triggered when a user scrolls down to the end of a page.
-     * It manages loading the file further by displaying 20 new entries at a time. The already
-     * built VBox is also added to the ScrollPane during this time.
-     */
-    private void setScrollPaneProperties() {
-		sp.vvalueProperty().addListener(new ChangeListener<Number>() {
-			public void changed(ObservableValue<? extends Number> ov, Number old_val, Number new_val) {
-				if ((double) new_val >= .99) {
-					int size = 0;
-					int startIndex = rowCount;
-                    if (rowCount + INCREMENTAL_LOG_COUNT < currentList.size()) {
-						rowCount += INCREMENTAL_LOG_COUNT;
-						size = rowCount;
-					} else {
-						size = currentList.size();
-						rowCount = size;
-					}
-					for (int i = startIndex; i < size; i++) {
-						if (!currentList.get(i).isVisible()) {
-							v.getChildren().add(currentList.get(i).getTitledPane());
-							currentList.get(i).setVisible(true);
-						}
-						stage.show();
-					}
-					v.setVisible(true);
-					stage.show();
-				}
-			}
-		});
-        sp.setContent(v);
-	}
-
-    /**
-     * Sets the tab's closing events and to it the already built ScrollPane
-     */
-    private void setTabProperties() {
-		t.setOnClosed(t1 -> {
-
-			// Remove log instances associated with closing tab(s)
-			Tab temp = (Tab) t1.getSource();
-			for (int i = 0; i < Main.getLogviewController().getLogs().size(); i++) {
-                if (Main.getLogviewController().getLogs().get(i).getName().equals(temp.getText())) {
-					Main.getLogviewController().getLogs().remove(i);
-					i--;
-				}
-			}
-
-			// Disable 'sort', 'search', and 'collapse all' features if no other tabs are open
-			if (Main.getLogviewController().getTabPane().getTabs().isEmpty()) {
-				Main.getLogviewController().getCollapseButton().setDisable(true);
-				Main.getLogviewController().getSortBy().setDisable(true);
-				Main.getLogviewController().getSearchBox().setDisable(true);
-                Main.getLogviewController().getRverseRowsCheckbox().setDisable(true);
-				stage.show();
-			}
-		});
-        Main.getLogviewController().getTabPane().getTabs().add(t);
-        t.setContent(sp);
-        t.setClosable(true);
-	}
-
-    /**
-     *
-     * @param rowCount is the int to set to this Log's local rowCount
-     */
-    public void setRowCount(int rowCount){
-        this.rowCount = rowCount;
-    }
-
-
-    /**
-     *
-     * @return the current list that the is being displayed on the screen
-     */
-    public List<Entry> getCurrentList() {
-        return currentList;
-    }
-
-
-    /**
-     * INITIAL_LOG_COUNT represents the initial amount of entries that should be initially loaded onto the screen
-     * @return the local final initial log count
-     */
-    public static int getInitialLogCount() {
-        return INITIAL_LOG_COUNT;
-    }
-
-    /**
-     *
-     * @return the VBox responsible for holding all entries of this Log
-     */
-    public VBox getVBox() {
-        return v;
-    }
-}
+package log_parser;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TextField;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+
+import java.io.*;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Created by Nicholas Ostaffe on 6/23/2016.
+ * Represents one file that has been opened in the program and begins the dynamic creation of FX objects.
+ * A Log can also show several files combined into one, with their entries interleaved by date.
+ *
+ * FXML Hierarchy: TabPane -> Tabs -> BorderPane -> ListView -> EntryCells (TitledPane -> TextArea)
+ *
+ * Above the ListView a HistogramView shows the entries over time from a TimeHistogram that is filled
+ * while the file is read. A time range picked on it is found with a binary search over the dates of
+ * the EntryIndex, so jumping to or showing a range does not read any entry.
+ *
+ * Beside the ListView a GroupView can show the most common types or field values of the entries shown.
+ * Its GroupCounts are counted again whenever the current list is replaced, and entries added to the
+ * current list while the file is read or followed are counted into them as they arrive.
+ *
+ * Every list of entries shown, all of them, search results or a time range, is an EntryView: an array of
+ * entry ids over entriesById that sorts and reverses without moving entries and keeps its sorted orders.
+ *
+ * The ListView only creates cells for the rows on screen and reuses them while scrolling, so the size of
+ * the scene graph does not depend on the size of the file or on how far the user has scrolled.
+ *
+ * Content of a Tab is encompassed in a Log object, which handles searching, sorting, and creation of entries.
+ * Furthermore, Log is responsible for reading in the file chosen and parsing new entries. The file is read
+ * by a LogLoader in the background while a progress bar with a cancel option is shown on top of the tab.
+ */
+public class Log {
+
+	private String name;
+	private EntryIndex index = new EntryIndex();
+	private final List<Entry> entriesById = new ArrayList<>();
+	private final EntryView entryList = new EntryView(entriesById);
+	private final ExpandedEntries expanded = new ExpandedEntries();
+	private final boolean indexed;
+	private TokenIndex tokenIndex;
+	private boolean loaded = false;
+	private Query currentQuery;
+	private final SearchCache searchCache = new SearchCache();
+	/**
+	 * Counts the searches started, a background search stops once it is no longer the latest
+	 */
+	private volatile int searchGeneration = 0;
+	/**
+	 * True while the background search of currentQuery runs, entries loaded meanwhile are searched once it ends
+	 */
+	private boolean searching = false;
+    private EntryView currentList = entryList;
+    private final List<File> files;
+	private boolean isReversed = false;
+	private TimeHistogram histogram = new TimeHistogram();
+	/**
+	 * The list shown before a time range was picked on the histogram, or null
+	 */
+	private EntryView unfilteredList;
+	/**
+	 * The time range picked on the histogram while unfilteredList is set
+	 */
+	private long rangeFrom;
+	private long rangeTo;
+	/**
+	 * True if the file is an archive, which is decompressed into LogDecoder.DEFAULT_DIRECTORY while it is read
+	 */
+	private boolean compressed = false;
+
+	/**
+	 * Recognizes the dated lines that start an entry in the TRIRIGA log format
+	 */
+	public static final EntryBoundaryDetector BOUNDARY_DETECTOR = StandardBoundaryDetector.DATE;
+
+	/**
+	 * Number of entries parsed and shown before the rest of the file, enough to fill the first screen
+	 */
+	public static final int INITIAL_LOG_COUNT = LogLoader.FIRST_BATCH_SIZE;
+
+	/**
+	 * Runs the searches of all logs, one at a time
+	 */
+	private static final ExecutorService searches = Executors.newSingleThreadExecutor(LogLoader.daemonThreads("log-search"));
+
+	private Tab t;
+	private BorderPane bp;
+	private ListView<Entry> listView;
+
+	private LogLoader loader;
+	private ProgressBar progressBar;
+	private Label progressLabel;
+	private Button cancelButton;
+	private HBox progressBox;
+	private VBox topBox;
+	private HistogramView histogramView;
+	private Label statusLabel;
+	private CheckBox followCheckbox;
+	private LogFollower follower;
+	private CheckBox groupCheckbox;
+	private GroupView groupView;
+	private GroupCounts groups;
+
+
+	public Log(String name, File file) {
+		this(name, Collections.singletonList(file));
+	}
+
+	/**
+	 * Opens several files as one log, with their entries interleaved by date
+	 *
+	 * @param name  the title of the log
+	 * @param files the files to combine
+	 */
+	public Log(String name, List<File> files) {
+		this.name = name;
+        this.files = files;
+		indexed = Main.getLogviewController().getIndexCheckbox().isSelected();
+		tokenIndex = indexed ? new TokenIndex() : null;
+		t = new Tab(name);
+		bp = new BorderPane();
+		listView = new ListView<>(currentList);
+		setListViewProperties();
+		setProgressProperties();
+		setStatusProperties();
+		setTabProperties();
+		readInFile();
+        Main.getStage().show();
+    }
+
+	/**
+	 * Adds @param entry to the local log
+	 * 
+	 * @param entry to add the entryList
+	 */
+	public void addEntry(Entry entry) {
+		this.entriesById.add(entry);
+		this.entryList.add(entry);
+	}
+
+	/**
+	 *
+	 * @return the title of the log
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 *
+	 * @return the offsets, dates and types of all Entries in the log
+	 */
+	public EntryIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 *
+	 * @return the list of all Entries in the log
+	 */
+	public ObservableList<Entry> getEntryList() {
+		return entryList;
+	}
+
+	/**
+	 * Searches Entries with a query, see QueryParser for the syntax. The search runs on a
+	 * background thread and a new, empty current list is shown at once; matches are added
+	 * to it in file order as each slice of the log has been searched. Starting another
+	 * search stops the one still running. Once the file has been read, text terms are
+	 * looked up in the token index if the log has one, and only the entries the index
+	 * cannot rule out are scanned. Recent results are kept in a SearchCache, so a query
+	 * searched again or narrowing a recent one, such as the search box gaining a
+	 * character, only scans what it has to. A query that does not parse is searched for
+	 * as plain text.
+	 *
+	 * @param keyword to search for
+	 */
+	public void search(String keyword) {
+		final int generation = ++searchGeneration;
+		unfilteredList = null;
+		histogramView.clearSelection();
+		if(keyword.trim().equals("")) {
+			currentQuery = null;
+			setCurrentList(entryList);
+			updateStatus();
+			recountGroups();
+			return;
+		}
+
+		Query parsed;
+		String problem = null;
+		try {
+			parsed = QueryParser.parse(keyword);
+		} catch (IllegalArgumentException e) {
+			parsed = new Query.Contains(keyword);
+			problem = e.getMessage();
+		}
+
+		final Query query = parsed;
+		final String parseProblem = problem;
+		final EntryView results = newView();
+		final EntryIndex searched = index;
+		final TokenIndex tokens = loaded ? tokenIndex : null;
+		final int count = entriesById.size();
+		currentQuery = query;
+		searching = true;
+		setCurrentList(results);
+		statusLabel.setText("Searching " + name);
+		recountGroups();
+
+		searches.execute(() -> {
+			try {
+				int[] ids = searchCache.search(searched, tokens, count, query, matches -> {
+					if (generation != searchGeneration) {
+						return false;
+					}
+					Platform.runLater(() -> addMatches(generation, results, matches));
+					return true;
+				});
+				Platform.runLater(() -> {
+					if (ids != null && generation == searchGeneration) {
+						// The file may still be loading, the entries delivered during the search were not searched
+						searching = false;
+						searchLoaded(count, -1);
+						updateStatus();
+						if (parseProblem != null) {
+							statusLabel.setText("Searched as plain text, " + parseProblem);
+						}
+					}
+				});
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				Platform.runLater(() -> statusLabel.setText("Search failed: " + e.getMessage()));
+			}
+		});
+	}
+
+	/**
+	 * Adds the matches of a slice of a background search to the list it fills
+	 *
+	 * @param generation the search the matches were found by, matches of a search that was replaced are dropped
+	 * @param results    the list the search fills
+	 * @param matches    the ids of the matches, in file order
+	 */
+	private void addMatches(int generation, EntryView results, int[] matches) {
+		if (generation != searchGeneration) {
+			return;
+		}
+		List<Entry> found = new ArrayList<>(matches.length);
+		for (int id : matches) {
+			// A followed file may have added ids to the token index that have not reached this thread yet.
+			// Matches arrive in file order, a grown entry that matched before is already the last one listed.
+			if (id < entriesById.size() && id > results.lastId()) {
+				found.add(entriesById.get(id));
+			}
+		}
+		addToList(results, found);
+	}
+
+    /**
+     * Sorts the current list on the primitive keys of the EntryIndex. Entries that are equal on
+     * @param sortOption keep the order of the file. The sorted order is kept by the EntryView, so
+     * sorting the same list by the same key again does not sort.
+     *
+     * @param sortOption "Date" or "Type"
+     */
+    public void sort(String sortOption) {
+        currentList.sort(sortOption, index);
+    }
+
+    /**
+     * Closes every opened entry. Only the opened entries and the rows on the screen are touched.
+     */
+    public void collapseAll() {
+        if (expanded.collapseAll()) {
+            listView.refresh();
+        }
+    }
+
+    /**
+     * Reverses the direction the entries are shown in, for the current list and the lists shown after it
+     */
+    public void reverse() {
+        isReversed = !isReversed;
+        currentList.setReversed(isReversed);
+    }
+
+    /**
+     * @return an empty list of entries, in the direction the entries are shown in
+     */
+    private EntryView newView() {
+        EntryView view = new EntryView(entriesById);
+        view.setReversed(isReversed);
+        return view;
+    }
+
+    /**
+     * Starts reading the file selected on a background LogLoader. Parsed Entries are added to this
+     * Log's local list of Entries on the FX thread, and the first INITIAL_LOG_COUNT of them are shown
+     * as soon as they arrive.
+     */
+	private void readInFile() {
+        loader = new LogLoader(files, index, BOUNDARY_DETECTOR, tokenIndex, new LogLoader.Listener() {
+            public void entriesParsed(int firstId, int count) {
+                histogram.add(index, firstId, count);
+                List<Entry> batch = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    batch.add(new Entry(index, firstId + i));
+                }
+                Platform.runLater(() -> addEntries(batch));
+            }
+
+            public void progressChanged(long bytesRead, long totalBytes) {
+                Platform.runLater(() -> {
+                    if (progressBar.isIndeterminate()) {
+                        progressLabel.setText(loadingText());
+                    }
+                    progressBar.setProgress(totalBytes == 0 ? 1 : (double) bytesRead / totalBytes);
+                });
+            }
+
+            public void loadingFinished(boolean cancelled) {
+                Platform.runLater(() -> {
+                    loaded = true;
+                    updateStatus();
+                    if (cancelled) {
+                        progressLabel.setText("Loading cancelled, " + entryList.size() + " entries read");
+                        cancelButton.setDisable(true);
+                    } else {
+                        topBox.getChildren().remove(progressBox);
+                        followCheckbox.setDisable(files.size() != 1 || LogDecoder.isCompressed(files.get(0)));
+                        if (followCheckbox.isSelected()) {
+                            startFollowing();
+                        }
+                    }
+                });
+            }
+
+            public void loadingFailed(Exception ex) {
+                ex.printStackTrace();
+                Platform.runLater(() -> {
+                    progressLabel.setText("Could not read " + name + ": " + ex.getMessage());
+                    cancelButton.setDisable(true);
+                });
+            }
+        });
+        loader.setSidecarDirectory(IndexSidecar.DEFAULT_DIRECTORY);
+        loader.start();
+	}
+
+    /**
+     * Follows the file of the log for appended entries, see LogFollower
+     */
+    private void startFollowing() {
+        // Callbacks still queued after the file was read again belong to the old index and are dropped
+        final EntryIndex followed = index;
+        follower = new LogFollower(files.get(0), 0, index, BOUNDARY_DETECTOR, tokenIndex, new LogFollower.Listener() {
+            public void entriesAppended(List<Entry> entries, int extendedId) {
+                Platform.runLater(() -> {
+                    if (index == followed) {
+                        appendEntries(entries, extendedId);
+                    }
+                });
+            }
+
+            public void fileTruncated() {
+                Platform.runLater(() -> {
+                    if (index == followed) {
+                        reload();
+                    }
+                });
+            }
+
+            public void followingFailed(Exception ex) {
+                ex.printStackTrace();
+                Platform.runLater(() -> {
+                    followCheckbox.setSelected(false);
+                    statusLabel.setText("Stopped following " + name + ": " + ex.getMessage());
+                });
+            }
+        });
+        follower.start();
+    }
+
+    private void stopFollowing() {
+        if (follower != null) {
+            follower.stop();
+            follower = null;
+        }
+    }
+
+    /**
+     * Adds the entries appended to a followed file. An active search only evaluates its query against
+     * the new entries, and against the last entry if it has grown.
+     *
+     * @param entries    the new Entries, in file order
+     * @param extendedId the id of an Entry that has grown, or -1
+     */
+    private void appendEntries(List<Entry> entries, int extendedId) {
+        entriesById.addAll(entries);
+        addToList(entryList, entries);
+        if (!entries.isEmpty()) {
+            histogram.add(index, entries.get(0).getId(), entries.size());
+            histogramView.redraw();
+        }
+
+        // A search still running searches the new entries once it ends
+        if (currentQuery != null && unfiltered() != entryList && !searching) {
+            searchLoaded(entriesById.size() - entries.size(), extendedId);
+        }
+        if (extendedId != -1) {
+            searchCache.forget(extendedId);
+            listView.refresh();
+        }
+        updateStatus();
+    }
+
+    /**
+     * Reads the file again from the start, after it was truncated while being followed
+     */
+    private void reload() {
+        stopFollowing();
+        loader.cancel();
+        index = new EntryIndex();
+        tokenIndex = indexed ? new TokenIndex() : null;
+        searchCache.clear();
+        searchGeneration++;
+        loaded = false;
+        currentQuery = null;
+        setCurrentList(entryList);
+        // The entries are still there while the ListView is told they are removed
+        entryList.clear();
+        entriesById.clear();
+        expanded.collapseAll();
+
+        progressBar.setProgress(0);
+        progressLabel.setText(name + " was truncated, reading it again");
+        cancelButton.setDisable(false);
+        topBox.getChildren().add(0, progressBox);
+        histogram = new TimeHistogram();
+        histogramView.setHistogram(histogram);
+        unfilteredList = null;
+        updateStatus();
+        recountGroups();
+        readInFile();
+    }
+
+    /**
+     * Adds a batch of parsed Entries to the log. The ListView picks them up if no search is active.
+     *
+     * @param batch the Entries parsed by the LogLoader, in file order
+     */
+    private void addEntries(List<Entry> batch) {
+        entriesById.addAll(batch);
+        addToList(entryList, batch);
+        if (currentQuery != null && !searching) {
+            searchLoaded(entriesById.size() - batch.size(), -1);
+        }
+        progressLabel.setText(loadingText() + ": " + entryList.size() + " entries");
+        histogramView.redraw();
+    }
+
+    /**
+     * Searches the entries loaded or appended after the search of currentQuery started on the search thread,
+     * like the search itself, and adds the matches to its results once they are found
+     *
+     * @param firstId    the first id that was not searched
+     * @param extendedId the id of an Entry that has grown since it was searched, or -1
+     */
+    private void searchLoaded(int firstId, int extendedId) {
+        int[] ids = new int[Math.max(0, entriesById.size() - firstId) + 1];
+        int count = 0;
+        if (extendedId != -1) {
+            ids[count++] = extendedId;
+        }
+        for (int id = firstId; id < entriesById.size(); id++) {
+            ids[count++] = id;
+        }
+        if (count == 0) {
+            return;
+        }
+        final int generation = searchGeneration;
+        final EntryView results = unfiltered();
+        final EntryIndex searched = index;
+        final Query query = currentQuery;
+        final int searchedCount = count;
+        searches.execute(() -> {
+            if (generation != searchGeneration) {
+                return;
+            }
+            try {
+                int[] matches = ParallelSearch.search(searched, ids, searchedCount, query);
+                Platform.runLater(() -> addMatches(generation, results, matches));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> statusLabel.setText("Search failed: " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     *
+     * @return the list shown, or the list a time range shown was picked from
+     */
+    private EntryView unfiltered() {
+        return (unfilteredList != null) ? unfilteredList : currentList;
+    }
+
+    /**
+     * Adds entries at the end of a list. If a time range of the list is shown, the entries dated within
+     * it are added to the range as well, and the entries added to the list shown are counted for the GroupView.
+     *
+     * @param list    the list of all entries or of the matches of the current search
+     * @param entries the entries to add, in file order
+     */
+    private void addToList(EntryView list, List<Entry> entries) {
+        list.addAll(entries);
+        if (list == currentList) {
+            countGroups(entries);
+        } else if (list == unfilteredList) {
+            List<Entry> inRange = new ArrayList<>();
+            for (Entry e : entries) {
+                if (inRange(e.getId())) {
+                    inRange.add(e);
+                }
+            }
+            currentList.addAll(inRange);
+            countGroups(inRange);
+        }
+    }
+
+    /**
+     * @return what the progress bar says while the file is read, a compressed file is decompressed meanwhile
+     */
+    private String loadingText() {
+        return compressed ? "Decompressing and loading " + name : "Loading " + name;
+    }
+
+    /**
+     * Builds the bar shown above the entries while the file is being read
+     */
+    private void setProgressProperties() {
+        // The file may wait for a disk reader of the LoadScheduler while other files are read
+        progressBar = new ProgressBar(ProgressBar.INDETERMINATE_PROGRESS);
+        progressBar.setPrefWidth(300);
+        progressLabel = new Label("Waiting to read " + name);
+        compressed = files.size() == 1 && LogDecoder.isCompressed(files.get(0));
+        if (compressed) {
+            progressLabel.setTooltip(new Tooltip(String.format("Decompressed copies are kept in %s, up to %.1f GB, "
+                    + "the least recently used are deleted first. Set -D%s to the number of bytes to keep.",
+                    LogDecoder.DEFAULT_DIRECTORY, LogDecoder.getDirectoryLimit() / (1024.0 * 1024 * 1024),
+                    LogDecoder.LIMIT_PROPERTY)));
+        }
+        cancelButton = new Button("Cancel");
+        cancelButton.setOnAction(e -> loader.cancel());
+
+        progressBox = new HBox(10, progressBar, cancelButton, progressLabel);
+        progressBox.setAlignment(Pos.CENTER_LEFT);
+        progressBox.setPadding(new Insets(4));
+
+        histogramView = new HistogramView(histogram, new HistogramView.Listener() {
+            public void rangeClicked(long from, long to) {
+                jumpTo(from, to);
+            }
+
+            public void rangeSelected(long from, long to) {
+                showRange(from, to);
+            }
+
+            public void selectionCleared() {
+                if (unfilteredList != null) {
+                    EntryView unfiltered = unfilteredList;
+                    unfilteredList = null;
+                    setCurrentList(unfiltered);
+                    updateStatus();
+                    recountGroups();
+                }
+            }
+        });
+        topBox = new VBox(progressBox, histogramView);
+        bp.setTop(topBox);
+    }
+
+    /**
+     * Finds the entries dated within a range with a binary search over the dates of the EntryIndex, or with
+     * a pass over the dates if the file is not in date order. Entries without a date belong to the entry above.
+     *
+     * @return the ids of the entries dated from @param from up to @param to
+     */
+    private BitSet idRange(long from, long to) {
+        int count = entriesById.size();
+        BitSet ids = new BitSet(count);
+        if (histogram.isOrdered()) {
+            ids.set(index.firstAtOrAfter(from, count), index.firstAtOrAfter(to, count));
+        } else {
+            long date = EntryIndex.UNKNOWN_TIMESTAMP;
+            for (int id = 0; id < count; id++) {
+                long timestamp = index.getTimestamp(id);
+                date = (timestamp == EntryIndex.UNKNOWN_TIMESTAMP) ? date : timestamp;
+                if (date >= from && date < to) {
+                    ids.set(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return true if the entry with @param id is dated within the range shown, see idRange
+     */
+    private boolean inRange(int id) {
+        long date = EntryIndex.UNKNOWN_TIMESTAMP;
+        for (int i = id; i >= 0 && date == EntryIndex.UNKNOWN_TIMESTAMP; i--) {
+            date = index.getTimestamp(i);
+        }
+        return date >= rangeFrom && date < rangeTo;
+    }
+
+    /**
+     * Scrolls to the first entry of the current list dated within a range
+     */
+    private void jumpTo(long from, long to) {
+        BitSet range = idRange(from, to);
+        for (int i = 0; i < currentList.size(); i++) {
+            if (range.get(currentList.get(i).getId())) {
+                listView.scrollTo(i);
+                return;
+            }
+        }
+        statusLabel.setText("No entries shown from " + formatTime(from) + " to " + formatTime(to));
+    }
+
+    /**
+     * Shows only the entries of the current list dated within a range, in the order they are shown in
+     */
+    private void showRange(long from, long to) {
+        if (unfilteredList == null) {
+            unfilteredList = currentList;
+        }
+        rangeFrom = from;
+        rangeTo = to;
+        BitSet range = idRange(from, to);
+        List<Entry> inRange = new ArrayList<>();
+        for (int id : unfilteredList.getIds()) {
+            if (range.get(id)) {
+                inRange.add(entriesById.get(id));
+            }
+        }
+        EntryView shown = newView();
+        shown.addAll(inRange);
+        if (unfilteredList.getSortKey() != null) {
+            shown.sort(unfilteredList.getSortKey(), index);
+        }
+        setCurrentList(shown);
+        updateStatus();
+        recountGroups();
+        statusLabel.setText(shown.size() + " entries from " + formatTime(from) + " to " + formatTime(to)
+                + ", right click the histogram to show all");
+    }
+
+    /**
+     * Counts the current list again for the GroupView, after the entries shown were replaced
+     */
+    private void recountGroups() {
+        if (!groupCheckbox.isSelected()) {
+            groups = null;
+            return;
+        }
+        groupView.setKeys(GroupCounts.keys(index));
+        groups = new GroupCounts(index, groupView.getKey());
+        countGroups(currentList);
+    }
+
+    /**
+     * Counts entries that were added to the current list into the GroupView's counts
+     */
+    private void countGroups(List<Entry> entries) {
+        if (groups == null) {
+            return;
+        }
+        int[] ids = new int[entries.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = entries.get(i).getId();
+        }
+        groups.add(ids, ids.length);
+        // The fields of the index are known once the loader has started
+        groupView.setKeys(GroupCounts.keys(index));
+        groupView.show(groups);
+    }
+
+    /**
+     * Narrows the search down to the entries whose type or field has a value picked in the GroupView
+     */
+    private void searchGroup(String key, String value) {
+        String predicate = (GroupCounts.TYPE.equals(key) ? "type" : key.toLowerCase()) + ":\""
+                + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        TextField searchBox = Main.getLogviewController().getSearchBox();
+        searchBox.setText((searchBox.getText().trim() + " " + predicate).trim());
+        Main.getLogviewController().searchBy(null);
+    }
+
+    private static String formatTime(long timestamp) {
+        return DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneOffset.UTC).format(Instant.ofEpochMilli(timestamp));
+    }
+
+    /**
+     * Builds the line below the entries that describes the log and its token index, with the option
+     * to follow the file once it has been read
+     */
+    private void setStatusProperties() {
+        statusLabel = new Label();
+        followCheckbox = new CheckBox("Follow");
+        followCheckbox.setDisable(true);
+        followCheckbox.setOnAction(e -> {
+            if (followCheckbox.isSelected()) {
+                startFollowing();
+            } else {
+                stopFollowing();
+            }
+            updateStatus();
+        });
+
+        groupView = new GroupView(new GroupView.Listener() {
+            public void keyChanged(String key) {
+                recountGroups();
+            }
+
+            public void valuePicked(String key, String value) {
+                searchGroup(key, value);
+            }
+        });
+        groupCheckbox = new CheckBox("Group by");
+        groupCheckbox.setOnAction(e -> {
+            bp.setRight(groupCheckbox.isSelected() ? groupView : null);
+            recountGroups();
+        });
+
+        HBox statusBox = new HBox(10, followCheckbox, groupCheckbox, statusLabel);
+        statusBox.setAlignment(Pos.CENTER_LEFT);
+        statusBox.setPadding(new Insets(2, 4, 2, 4));
+        bp.setBottom(statusBox);
+        updateStatus();
+    }
+
+    /**
+     * Shows the number of entries, and the size and build time of the token index once it is complete
+     */
+    private void updateStatus() {
+        if (tokenIndex == null) {
+            statusLabel.setText(entriesById.size() + " entries, not indexed");
+        } else if (!loaded) {
+            statusLabel.setText("Indexing " + name);
+        } else {
+            statusLabel.setText(String.format("%d entries, %d tokens indexed in %d ms, %.1f MB",
+                    entriesById.size(), tokenIndex.getTokenCount(), tokenIndex.getBuildMillis(),
+                    tokenIndex.getMemoryUsage() / (1024.0 * 1024.0)));
+        }
+        if (follower != null) {
+            statusLabel.setText(statusLabel.getText() + ", following");
+        }
+    }
+
+    /**
+     * Sets up the ListView showing the current list. Its cells are EntryCells, which are reused for
+     * whichever rows are scrolled into view.
+     */
+    private void setListViewProperties() {
+        listView.setCellFactory(view -> new EntryCell(expanded));
+        listView.setMaxWidth(1020);
+        bp.setCenter(listView);
+	}
+
+    /**
+     * Sets the tab's closing events and to it the already built BorderPane
+     */
+    private void setTabProperties() {
+		t.setOnClosed(t1 -> {
+			// Stop reading the file if it is still being loaded or followed
+			loader.cancel();
+			stopFollowing();
+			searchGeneration++;
+
+			// Remove log instances associated with closing tab(s)
+			Tab temp = (Tab) t1.getSource();
+			for (int i = 0; i < Main.getLogviewController().getLogs().size(); i++) {
+                if (Main.getLogviewController().getLogs().get(i).getName().equals(temp.getText())) {
+					Main.getLogviewController().getLogs().remove(i);
+					i--;
+				}
+			}
+
+			// Disable 'sort', 'search', and 'collapse all' features if no other tabs are open
+			if (Main.getLogviewController().getTabPane().getTabs().isEmpty()) {
+				Main.getLogviewController().getCollapseButton().setDisable(true);
+				Main.getLogviewController().getSortBy().setDisable(true);
+				Main.getLogviewController().getSearchBox().setDisable(true);
+                Main.getLogviewController().getRverseRowsCheckbox().setDisable(true);
+				Main.getStage().show();
+			}
+		});
+        Main.getLogviewController().getTabPane().getTabs().add(t);
+        t.setContent(bp);
+        t.setClosable(true);
+	}
+
+    /**
+     *
+     * @return the current list that the is being displayed on the screen
+     */
+    public ObservableList<Entry> getCurrentList() {
+        return currentList;
+    }
+
+
+    /**
+     * Replaces the current list and shows it in the direction the entries are shown in, which may have
+     * changed while it was not shown
+     */
+    private void setCurrentList(EntryView view) {
+        currentList = view;
+        currentList.setReversed(isReversed);
+        showCurrentList();
+    }
+
+    /**
+     * Shows the current list from its first row, after it was searched, sorted or reversed
+     */
+    public void showCurrentList() {
+        listView.setItems(currentList);
+        listView.scrollTo(0);
+    }
+
+    /**
+     *
+     * @return the ListView responsible for showing the entries of this Log
+     */
+    public ListView<Entry> getListView() {
+        return listView;
+    }
+}
@@ -0,0 +1,701 @@
+package log_parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Turns compressed logs into plain files that can be mapped like any other log.
+ *
+ * The format is recognised by the first bytes of a file, not by its name. A compressed file is decoded
+ * once into a cache directory and the decoded copy is mapped, so entries can be read at any offset without
+ * decompressing the archive from its start again, and an IndexSidecar of the copy lets it be reopened
+ * without parsing. The copy is named after the archive's path, size and modification time, so a changed
+ * archive is decoded again. The least recently used copies are deleted once the copies in a directory take
+ * more than getDirectoryLimit() bytes, and runs that should not leave copies behind, such as LogTool
+ * without --cache, decode into temporaryDirectory(), which is deleted when the application exits.
+ *
+ * start() decodes on a thread of its own and the copy grows while it is written, so a LogLoader parses the
+ * bytes decoded so far instead of waiting for the whole archive. A marker file next to the copy is only
+ * deleted once the copy is complete, which tells a copy that is still being written, or was left half
+ * written, from one that can be used again. The copy itself is never renamed, since it is already mapped.
+ *
+ * gzip files written by bgzip consist of blocks that each record their own compressed size, so the blocks
+ * are inflated in parallel and written out in order. Other gzip files, zip files and Zstandard files are
+ * decoded as one stream. The JDK has no Zstandard decoder, so .zst files are piped through the zstd command.
+ */
+public class LogDecoder {
+
+    /**
+     * The folder decoded copies are kept in
+     */
+    public static final File DEFAULT_DIRECTORY =
+            new File(System.getProperty("user.home"), ".prettylogparser" + File.separator + "decoded");
+
+    /**
+     * System property holding the number of bytes the decoded copies of a directory may take
+     */
+    public static final String LIMIT_PROPERTY = "prettylogparser.decodedLimit";
+
+    /**
+     * Number of bytes the decoded copies of a directory may take unless LIMIT_PROPERTY says otherwise
+     */
+    public static final long DEFAULT_DIRECTORY_LIMIT = 16L * 1024 * 1024 * 1024;
+
+    /**
+     * Milliseconds between two checks whether a zstd process should be stopped
+     */
+    private static final long ZSTD_POLL_MILLIS = 100;
+
+    private static File temporaryDirectory;
+
+    /**
+     * Number of bgzip blocks, of at most 64 KB each, one task inflates
+     */
+    private static final int BLOCKS_PER_TASK = 64;
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final ExecutorService inflaters = Executors.newFixedThreadPool(THREADS, LogLoader.daemonThreads("log-decoder"));
+
+    private static final ExecutorService decodings = Executors.newCachedThreadPool(LogLoader.daemonThreads("log-decoding"));
+
+    /**
+     * The decodings still running, by the copy they write
+     */
+    private static final Map<File, Decoding> running = new HashMap<>();
+
+    /**
+     * The ways a log file can be stored
+     */
+    public enum Format {
+        PLAIN, GZIP, ZIP, ZSTD
+    }
+
+    /**
+     * Receives how far the decoding of an archive has got
+     */
+    public interface Progress {
+        /**
+         * @param bytesRead  the number of bytes of the archive read so far
+         * @param totalBytes the size of the archive
+         * @return false to stop decoding
+         */
+        boolean decoded(long bytesRead, long totalBytes);
+    }
+
+    private LogDecoder() {
+    }
+
+    /**
+     *
+     * @return the number of bytes the decoded copies of a directory may take before the least recently used
+     * ones are deleted
+     */
+    public static long getDirectoryLimit() {
+        return Long.getLong(LIMIT_PROPERTY, DEFAULT_DIRECTORY_LIMIT);
+    }
+
+    /**
+     *
+     * @return a directory for decoded copies that is deleted with its contents when the application exits
+     * @throws IOException if the directory cannot be created
+     */
+    public static synchronized File temporaryDirectory() throws IOException {
+        if (temporaryDirectory == null) {
+            final File directory = Files.createTempDirectory("prettylogparser-decoded").toFile();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                File[] copies = directory.listFiles();
+                if (copies != null) {
+                    for (File copy : copies) {
+                        copy.delete();
+                    }
+                }
+                directory.delete();
+            }, "log-decoder-cleanup"));
+            temporaryDirectory = directory;
+        }
+        return temporaryDirectory;
+    }
+
+    /**
+     *
+     * @param file a log file
+     * @return the format of @param file, told by its first bytes
+     * @throws IOException if the file cannot be read
+     */
+    public static Format detect(File file) throws IOException {
+        byte[] magic = new byte[4];
+        int count = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while (count < magic.length && (read = in.read(magic, count, magic.length - count)) > 0) {
+                count += read;
+            }
+        }
+        if (count >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+            return Format.GZIP;
+        } else if (count == 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+            return Format.ZIP;
+        } else if (count == 4 && (magic[0] & 0xFF) == 0x28 && (magic[1] & 0xFF) == 0xB5
+                && (magic[2] & 0xFF) == 0x2F && (magic[3] & 0xFF) == 0xFD) {
+            return Format.ZSTD;
+        }
+        return Format.PLAIN;
+    }
+
+    /**
+     *
+     * @param file a log file
+     * @return true if @param file is compressed, false if it is plain or cannot be read
+     */
+    public static boolean isCompressed(File file) {
+        try {
+            return detect(file) != Format.PLAIN;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Finds the plain contents of a log file, decoding it first if it is compressed
+     *
+     * @param file      the log file
+     * @param directory the folder decoded copies are kept in
+     * @param progress  receives how far the decoding has got, or null
+     * @return @param file itself if it is not compressed, otherwise its decoded copy, or null if the decoding
+     * was stopped by @param progress
+     * @throws IOException if the file cannot be read or is not a valid archive
+     */
+    public static File decode(File file, File directory, Progress progress) throws IOException {
+        Decoding decoding = start(file, directory);
+        try {
+            while (!decoding.await(ZSTD_POLL_MILLIS)) {
+                if (progress != null && !progress.decoded(decoding.getBytesRead(), decoding.getArchiveSize())) {
+                    return null;
+                }
+            }
+            return decoding.get() ? decoding.getCopy() : null;
+        } finally {
+            decoding.stop();
+        }
+    }
+
+    /**
+     * Starts decoding a log file on a thread of its own. The copy grows while the archive is decoded, so the
+     * bytes decoded so far can already be read. Starting an archive that is being decoded joins the running
+     * decoding, which is only stopped once every caller has stopped it.
+     *
+     * @param file      the log file
+     * @param directory the folder decoded copies are kept in
+     * @return the decoding of @param file, which is done at once if the file is not compressed or its copy
+     * is complete already
+     * @throws IOException if the file cannot be read or the copy cannot be created
+     */
+    public static Decoding start(File file, File directory) throws IOException {
+        Format format = detect(file);
+        if (format == Format.PLAIN) {
+            return new Decoding(file, file.length());
+        }
+
+        String prefix = file.getName() + "-" + Integer.toHexString(file.getAbsolutePath().hashCode()) + "-";
+        File decoded = new File(directory, prefix + Long.toHexString(file.length()) + "-"
+                + Long.toHexString(file.lastModified()) + ".log");
+        File marker = new File(directory, decoded.getName() + ".partial");
+        synchronized (running) {
+            Decoding decoding = running.get(decoded);
+            if (decoding != null && decoding.join()) {
+                return decoding;
+            }
+            if (decoded.isFile() && !marker.exists()) {
+                // The modification time of a copy is when it was last used, the oldest copies are deleted first
+                decoded.setLastModified(System.currentTimeMillis());
+                return new Decoding(decoded, file.length());
+            }
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+            if (!marker.isFile() && !marker.createNewFile()) {
+                throw new IOException("Could not create " + marker);
+            }
+            // Truncates a copy left half written by an earlier run
+            Files.newOutputStream(decoded.toPath()).close();
+
+            final Decoding started = new Decoding(decoded, file.length());
+            running.put(decoded, started);
+            started.future = decodings.submit(() -> started.run(file, format, prefix, directory, marker));
+            return started;
+        }
+    }
+
+    /**
+     * Deletes the least recently used copies of a directory until the copies take at most getDirectoryLimit()
+     * bytes, or only @param keep is left
+     */
+    private static void evict(File directory, File keep) {
+        // Copies that are still being written are not counted, nor deleted
+        File[] copies = directory.listFiles((dir, name) -> name.endsWith(".log")
+                && !new File(dir, name + ".partial").exists());
+        if (copies == null) {
+            return;
+        }
+        long total = 0;
+        for (File copy : copies) {
+            total += copy.length();
+        }
+        long limit = getDirectoryLimit();
+        if (total <= limit) {
+            return;
+        }
+        Arrays.sort(copies, Comparator.comparingLong(File::lastModified));
+        for (File copy : copies) {
+            if (total <= limit) {
+                break;
+            }
+            if (copy.equals(keep)) {
+                continue;
+            }
+            long length = copy.length();
+            if (copy.delete()) {
+                total -= length;
+            } else {
+                // Still mapped by an open log, it is removed when the application exits
+                copy.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * @param in       the decoded bytes
+     * @param counting the archive @param in decodes
+     * @return false if the copy was stopped by the progress listener
+     */
+    private static boolean copy(InputStream in, CountingInputStream counting, OutputStream out) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+            if (counting.stopped) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes every file of the archive one after another, in the order they are stored
+     */
+    private static boolean decodeZip(CountingInputStream in, OutputStream out) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory() && !copy(zip, in, out)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the zstd command, asking @param progress every ZSTD_POLL_MILLIS whether to stop it
+     *
+     * @return false if the decoding was stopped
+     */
+    private static boolean decodeZstd(File file, File target, Progress progress) throws IOException {
+        Process process;
+        try {
+            process = new ProcessBuilder("zstd", "-d", "-c", "-q", file.getAbsolutePath())
+                    .redirectOutput(target)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+        } catch (IOException e) {
+            throw new IOException("Opening Zstandard files needs the zstd command on the PATH", e);
+        }
+        try {
+            while (!process.waitFor(ZSTD_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                // zstd does not tell how far it has read, only whether to go on is asked
+                if (progress != null && !progress.decoded(0, file.length())) {
+                    process.destroy();
+                    process.waitFor();
+                    return false;
+                }
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("zstd could not decode " + file);
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the first member of the gzip file carries the BC field bgzip writes its block sizes to
+     */
+    private static boolean isBgzip(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] header = new byte[12];
+            in.readFully(header);
+            if ((header[3] & 0x04) == 0) {
+                return false;
+            }
+            int extraLength = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+            byte[] extra = new byte[extraLength];
+            in.readFully(extra);
+            return blockSize(extra) != -1;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param extra the extra field of a gzip member header
+     * @return the total size of the member minus one as stored in the BC subfield, or -1 if there is none
+     */
+    private static int blockSize(byte[] extra) {
+        for (int i = 0; i + 4 <= extra.length; ) {
+            int length = (extra[i + 2] & 0xFF) | (extra[i + 3] & 0xFF) << 8;
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && length == 2 && i + 6 <= extra.length) {
+                return (extra[i + 4] & 0xFF) | (extra[i + 5] & 0xFF) << 8;
+            }
+            i += 4 + length;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the blocks of a bgzip file one after another and inflates runs of BLOCKS_PER_TASK of them
+     * on the decoder threads. Only a few runs are in flight at a time, and they are written in file order.
+     */
+    private static boolean decodeBgzip(CountingInputStream counting, OutputStream out) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(counting, 1 << 16));
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        List<byte[]> blocks = new ArrayList<>(BLOCKS_PER_TASK);
+        byte[] header = new byte[12];
+        try {
+            while (true) {
+                int first = in.read();
+                if (first == -1) {
+                    break;
+                }
+                header[0] = (byte) first;
+                in.readFully(header, 1, header.length - 1);
+                int extraLength = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+                byte[] extra = new byte[extraLength];
+                in.readFully(extra);
+                int size = blockSize(extra);
+                if ((header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B || size == -1) {
+                    throw new ZipException("Not a bgzip block");
+                }
+                // The compressed data followed by the CRC32 and the size of the inflated data
+                byte[] block = new byte[size + 1 - header.length - extraLength];
+                in.readFully(block);
+                blocks.add(block);
+
+                if (blocks.size() == BLOCKS_PER_TASK) {
+                    submit(blocks, pending);
+                    blocks = new ArrayList<>(BLOCKS_PER_TASK);
+                    while (pending.size() > 2 * THREADS || (!pending.isEmpty() && pending.peekFirst().isDone())) {
+                        out.write(pending.removeFirst().get());
+                    }
+                    if (counting.stopped) {
+                        return false;
+                    }
+                }
+            }
+            submit(blocks, pending);
+            while (!pending.isEmpty()) {
+                out.write(pending.removeFirst().get());
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static void submit(final List<byte[]> blocks, Deque<Future<byte[]>> pending) {
+        pending.addLast(inflaters.submit(() -> {
+            ByteArrayOutputStream inflated = new ByteArrayOutputStream(blocks.size() * 64 * 1024);
+            Inflater inflater = new Inflater(true);
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[64 * 1024];
+            try {
+                for (byte[] block : blocks) {
+                    inflater.reset();
+                    crc.reset();
+                    // A raw Inflater needs one byte past the deflate data, the first byte of the CRC32 serves
+                    inflater.setInput(block, 0, block.length - 7);
+                    long size = 0;
+                    while (!inflater.finished()) {
+                        int count = inflater.inflate(buffer);
+                        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            throw new ZipException("Truncated bgzip block");
+                        }
+                        crc.update(buffer, 0, count);
+                        inflated.write(buffer, 0, count);
+                        size += count;
+                    }
+                    if (crc.getValue() != readInt(block, block.length - 8)
+                            || (size & 0xFFFFFFFFL) != readInt(block, block.length - 4)) {
+                        throw new ZipException("Corrupt bgzip block");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            } finally {
+                inflater.end();
+            }
+            return inflated.toByteArray();
+        }));
+    }
+
+    /**
+     * @return the unsigned little endian int at @param offset
+     */
+    private static long readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFFL) | (bytes[offset + 1] & 0xFFL) << 8
+                | (bytes[offset + 2] & 0xFFL) << 16 | (bytes[offset + 3] & 0xFFL) << 24;
+    }
+
+    /**
+     * An archive being decoded into its copy by start(). The copy only grows while the decoding runs, and
+     * holds the whole contents of the archive once get() returns true.
+     */
+    public static class Decoding implements Progress {
+        private final File copy;
+        private final long archiveSize;
+        private volatile long bytesRead = 0;
+        private volatile Future<Boolean> future;
+        private int users = 1;
+        private volatile boolean stopped = false;
+
+        private Decoding(File copy, long archiveSize) {
+            this.copy = copy;
+            this.archiveSize = archiveSize;
+        }
+
+        /**
+         *
+         * @return the decoded copy, or the file itself if it is not compressed
+         */
+        public File getCopy() {
+            return copy;
+        }
+
+        public long getArchiveSize() {
+            return archiveSize;
+        }
+
+        /**
+         *
+         * @return the number of bytes of the archive decoded so far, 0 while the zstd command decodes it
+         */
+        public long getBytesRead() {
+            return isDone() ? archiveSize : bytesRead;
+        }
+
+        public boolean isDone() {
+            return future == null || future.isDone();
+        }
+
+        /**
+         * Waits until the decoding is done, or for at most @param millis
+         *
+         * @return true if the decoding is done
+         */
+        public boolean await(long millis) throws IOException {
+            if (future == null) {
+                return true;
+            }
+            try {
+                future.get(millis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // Failures are thrown by get()
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while decoding " + copy, e);
+            }
+            return isDone();
+        }
+
+        /**
+         * Waits until the decoding is done
+         *
+         * @return true if the copy is complete, false if the decoding was stopped
+         * @throws IOException if the archive could not be decoded
+         */
+        public boolean get() throws IOException {
+            if (future == null) {
+                return true;
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while decoding " + copy, e);
+            } catch (ExecutionException e) {
+                throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+
+        /**
+         * Tells the decoding that its caller no longer needs it. It stops once no caller needs it.
+         */
+        public synchronized void stop() {
+            if (users > 0 && --users == 0) {
+                stopped = true;
+            }
+        }
+
+        /**
+         * @return false if the decoding has been stopped and cannot be joined any more
+         */
+        private synchronized boolean join() {
+            if (stopped) {
+                return false;
+            }
+            users++;
+            return true;
+        }
+
+        @Override
+        public boolean decoded(long bytesRead, long totalBytes) {
+            this.bytesRead = bytesRead;
+            return !stopped;
+        }
+
+        /**
+         * Decodes the archive into the copy, on a thread of the decodings pool
+         */
+        private boolean run(File file, Format format, String prefix, File directory, File marker) throws IOException {
+            boolean complete = false;
+            try {
+                if (format == Format.ZSTD) {
+                    complete = decodeZstd(file, copy, this);
+                } else {
+                    try (CountingInputStream in = new CountingInputStream(new FileInputStream(file), file.length(), this);
+                         OutputStream out = new BufferedOutputStream(Files.newOutputStream(copy.toPath()), 1 << 16)) {
+                        if (format == Format.ZIP) {
+                            complete = decodeZip(in, out);
+                        } else if (isBgzip(file)) {
+                            complete = decodeBgzip(in, out);
+                        } else {
+                            complete = copy(new GZIPInputStream(in, 1 << 16), in, out);
+                        }
+                    }
+                }
+            } finally {
+                synchronized (running) {
+                    running.remove(copy);
+                    if (complete) {
+                        Files.deleteIfExists(marker.toPath());
+                    } else if (copy.delete()) {
+                        marker.delete();
+                    } else {
+                        // Still mapped by the log that stopped it, the marker keeps it from being used again
+                        copy.deleteOnExit();
+                    }
+                }
+            }
+            if (!complete) {
+                return false;
+            }
+
+            // Copies of earlier versions of the archive are not needed any more
+            File[] stale = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".log"));
+            if (stale != null) {
+                for (File old : stale) {
+                    if (!old.equals(copy) && !old.delete()) {
+                        // Still mapped by an open log, it is removed the next time
+                        old.deleteOnExit();
+                    }
+                }
+            }
+            evict(directory, copy);
+            return true;
+        }
+    }
+
+    /**
+     * Counts the bytes read from the archive for the progress listener
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final long total;
+        private final Progress progress;
+        private long count = 0;
+        private long reported = 0;
+        boolean stopped = false;
+
+        CountingInputStream(InputStream in, long total, Progress progress) {
+            super(in);
+            this.total = total;
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                counted(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                counted(read);
+            }
+            return read;
+        }
+
+        private void counted(int bytes) {
+            count += bytes;
+            // Reports about every megabyte
+            if (progress != null && count - reported >= (1 << 20)) {
+                reported = count;
+                stopped |= !progress.decoded(count, total);
+            }
+        }
+    }
+}
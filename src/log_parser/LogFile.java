@@ -0,0 +1,263 @@
+package log_parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * One or more log files read into an EntryIndex, for use outside of the user interface.
+ *
+ * open() runs the same LogLoader a Log tab runs, merging several files by date, and waits until
+ * every file has been read. The entries can then be searched with the query language of QueryParser
+ * and sorted with EntrySorter, all on entry ids, so nothing is decoded until a caller asks for the
+ * text of an entry. stream() instead hands on the entries matching a query while the files are still
+ * being read, for files too large to keep an index of.
+ *
+ * Compressed files opened without a sidecar directory are decoded into LogDecoder.temporaryDirectory(), so
+ * that scripts do not leave decoded copies behind. With a sidecar directory the copies are kept in
+ * LogDecoder.DEFAULT_DIRECTORY next to their sidecars, within its size limit.
+ */
+public class LogFile {
+
+    private final List<File> files;
+    private final EntryIndex index;
+    private final TokenIndex tokens;
+
+    private LogFile(List<File> files, EntryIndex index, TokenIndex tokens) {
+        this.files = files;
+        this.index = index;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Reads a single log file
+     *
+     * @see #open(List, EntryBoundaryDetector, boolean, File)
+     */
+    public static LogFile open(File file, EntryBoundaryDetector detector, boolean tokenIndex,
+                               File sidecarDirectory) throws IOException {
+        return open(Collections.singletonList(file), detector, tokenIndex, sidecarDirectory);
+    }
+
+    /**
+     * Reads log files without keeping a sidecar
+     *
+     * @see #open(List, EntryBoundaryDetector, boolean, File)
+     */
+    public static LogFile open(List<File> files, EntryBoundaryDetector detector, boolean tokenIndex)
+            throws IOException {
+        return open(files, detector, tokenIndex, null);
+    }
+
+    /**
+     * Reads log files and blocks until all of them have been read
+     *
+     * @param files            the log files to read, entries of several files are merged by date
+     * @param detector         decides which lines of the files start a new entry
+     * @param tokenIndex       true to build a token index, which speeds up repeated searches
+     * @param sidecarDirectory the folder an IndexSidecar of a single file is kept in, or null
+     * @return the entries of @param files
+     * @throws IOException if a file cannot be read
+     */
+    public static LogFile open(List<File> files, EntryBoundaryDetector detector, boolean tokenIndex,
+                               File sidecarDirectory) throws IOException {
+        EntryIndex index = new EntryIndex();
+        TokenIndex tokens = tokenIndex ? new TokenIndex() : null;
+        CountDownLatch done = new CountDownLatch(1);
+        Exception[] failure = new Exception[1];
+
+        LogLoader loader = new LogLoader(files, index, detector, tokens, new LogLoader.Listener() {
+            public void entriesParsed(int firstId, int count) {
+            }
+
+            public void progressChanged(long bytesRead, long totalBytes) {
+            }
+
+            public void loadingFinished(boolean cancelled) {
+                done.countDown();
+            }
+
+            public void loadingFailed(Exception ex) {
+                failure[0] = ex;
+                done.countDown();
+            }
+        });
+        loader.setSidecarDirectory(sidecarDirectory);
+        loader.setDecodedDirectory((sidecarDirectory != null) ? LogDecoder.DEFAULT_DIRECTORY : LogDecoder.temporaryDirectory());
+        loader.start();
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + files, e);
+        }
+        if (failure[0] instanceof IOException) {
+            throw (IOException) failure[0];
+        } else if (failure[0] != null) {
+            throw new IOException(failure[0]);
+        }
+        if (tokens != null) {
+            tokens.trim();
+        }
+        return new LogFile(files, index, tokens);
+    }
+
+    /**
+     * Receives the entries matching a query as LogFile.stream finds them
+     */
+    public interface MatchListener {
+        /**
+         * @param index the index holding the entry, only rows from @param id on can still be read
+         * @param id    the id of the matching entry
+         * @throws IOException to stop reading the files
+         */
+        void entryMatched(EntryIndex index, int id) throws IOException;
+    }
+
+    /**
+     * Reads log files and evaluates a query on each batch of entries as soon as it is parsed, instead of
+     * waiting for the whole files like open(). The rows of a batch are dropped once its matches were handed
+     * on, so the memory used and the time until the first match do not grow with the size of the files.
+     * No token index or sidecar is kept, and fields are only extracted when @param query uses them.
+     *
+     * @param files    the log files to read, entries of several files are merged by date
+     * @param detector decides which lines of the files start a new entry
+     * @param query    the query to evaluate, or null to hand on every entry
+     * @param listener receives the matching entries in file order, on the loader's thread
+     * @return the number of matching entries
+     * @throws IOException if a file cannot be read or @param listener failed
+     */
+    public static int stream(List<File> files, EntryBoundaryDetector detector, Query query,
+                             MatchListener listener) throws IOException {
+        EntryIndex index = new EntryIndex();
+        CountDownLatch done = new CountDownLatch(1);
+        Exception[] failure = new Exception[1];
+        int[] matched = new int[1];
+        LogLoader[] loader = new LogLoader[1];
+
+        loader[0] = new LogLoader(files, index, detector, null, new LogLoader.Listener() {
+            public void entriesParsed(int firstId, int count) {
+                if (failure[0] != null) {
+                    return;
+                }
+                int[] ids = new int[count];
+                Arrays.setAll(ids, i -> firstId + i);
+                int[] matches = (query == null) ? ids : ParallelSearch.search(index, ids, count, query);
+                try {
+                    for (int id : matches) {
+                        listener.entryMatched(index, id);
+                    }
+                } catch (IOException e) {
+                    failure[0] = e;
+                    loader[0].cancel();
+                }
+                matched[0] += matches.length;
+                index.discard(firstId + count);
+            }
+
+            public void progressChanged(long bytesRead, long totalBytes) {
+            }
+
+            public void loadingFinished(boolean cancelled) {
+                done.countDown();
+            }
+
+            public void loadingFailed(Exception ex) {
+                failure[0] = ex;
+                done.countDown();
+            }
+        });
+        loader[0].setFieldExtraction(query != null && query.needsFields());
+        loader[0].setDecodedDirectory(LogDecoder.temporaryDirectory());
+        loader[0].start();
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            loader[0].cancel();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + files, e);
+        }
+        if (failure[0] instanceof IOException) {
+            throw (IOException) failure[0];
+        } else if (failure[0] != null) {
+            throw new IOException(failure[0]);
+        }
+        return matched[0];
+    }
+
+    public List<File> getFiles() {
+        return files;
+    }
+
+    public EntryIndex getIndex() {
+        return index;
+    }
+
+    /**
+     *
+     * @return the number of entries read
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     *
+     * @param id a number below size()
+     * @return the entry with @param id, reading its text from the file whenever it is asked for
+     */
+    public Entry getEntry(int id) {
+        return new Entry(index, id);
+    }
+
+    /**
+     *
+     * @return the ids of all entries, in file order
+     */
+    public int[] ids() {
+        int[] ids = new int[index.size()];
+        Arrays.setAll(ids, i -> i);
+        return ids;
+    }
+
+    /**
+     * Searches the entries with a query, see QueryParser for the syntax
+     *
+     * @param query the query to search for
+     * @return the ids of the matching entries, in file order
+     * @throws IllegalArgumentException if @param query does not parse
+     */
+    public int[] search(String query) {
+        return search(QueryParser.parse(query));
+    }
+
+    /**
+     *
+     * @param query the query to evaluate
+     * @return the ids of the matching entries, in file order
+     */
+    public int[] search(Query query) {
+        return ParallelSearch.search(index, tokens, index.size(), query);
+    }
+
+    /**
+     * Sorts entry ids the way a Log tab sorts its entries
+     *
+     * @param ids        the ids to sort, sorted in place
+     * @param sortOption "Date" or "Type", entries that are equal keep the order of the file
+     */
+    public void sort(int[] ids, String sortOption) {
+        if (sortOption.equals("Date")) {
+            EntrySorter.sortByDate(ids, index);
+        } else if (sortOption.equals("Type")) {
+            EntrySorter.sortByType(ids, index);
+        } else {
+            throw new IllegalArgumentException("Unknown sort option " + sortOption);
+        }
+    }
+}
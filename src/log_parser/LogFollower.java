@@ -0,0 +1,264 @@
+package log_parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * Follows a log file that is still being written, the way tail -F does, once a LogLoader has read it.
+ *
+ * A WatchService on the file's folder wakes the follower when the file changes, and the size of the file
+ * is also checked every POLL_MILLIS in case the file system does not report changes. Only the bytes from
+ * the start of the last entry onwards are read again, so the cost of a check depends on how much was
+ * appended and not on the size of the file. The last entry is read again because more lines of it, such as
+ * the rest of a stack trace, may have been appended, in which case its length is updated in place.
+ *
+ * If the file was replaced by a new one (rotated), the new file is read from its start as another source of
+ * the same EntryIndex. If the file became shorter (truncated), following stops and the listener is told, since
+ * the entries read so far no longer match the file.
+ */
+public class LogFollower {
+
+    /**
+     * Longest time between two checks of the file's size
+     */
+    private static final long POLL_MILLIS = 1000;
+
+    private static final ExecutorService followers = Executors.newCachedThreadPool(LogLoader.daemonThreads("log-follower"));
+
+    /**
+     * Receives what was appended to the file. All methods are called from the follower's own thread.
+     */
+    public interface Listener {
+        /**
+         * @param entries    the entries appended since the last call, in file order
+         * @param extendedId the id of an entry that was already handed out and has grown, or -1
+         */
+        void entriesAppended(List<Entry> entries, int extendedId);
+
+        void fileTruncated();
+
+        void followingFailed(Exception ex);
+    }
+
+    private final File file;
+    private final EntryIndex index;
+    private final EntryBoundaryDetector detector;
+    private final TokenIndex tokens;
+    private final FieldExtractor extractor;
+    private final Listener listener;
+    private volatile boolean stopped = false;
+    private volatile WatchService watcher;
+
+    private int source;
+    private Object identity;
+    private long knownSize;
+    /**
+     * The id of the last entry of the file, which is read again by the next check, or -1
+     */
+    private int lastId;
+    private long resumeOffset;
+
+    /**
+     * @param file     the log file to follow
+     * @param source   the source number the file was loaded into @param index with
+     * @param index    the index holding the entries read so far
+     * @param detector decides which lines of the file start a new entry
+     * @param tokens   the index the tokens of new entries are added to, or null
+     * @param listener receives the appended Entries
+     */
+    public LogFollower(File file, int source, EntryIndex index, EntryBoundaryDetector detector, TokenIndex tokens,
+                       Listener listener) {
+        this.file = file;
+        this.source = source;
+        this.index = index;
+        this.detector = detector;
+        this.tokens = tokens;
+        this.extractor = FieldExtractor.forFormat(detector);
+        this.listener = listener;
+
+        // Continue after the last entry the loader read from the file
+        lastId = -1;
+        for (int id = index.size() - 1; id >= 0; id--) {
+            if (index.getSourceNumber(id) == source) {
+                lastId = id;
+                break;
+            }
+        }
+        resumeOffset = (lastId == -1) ? 0 : index.getOffset(lastId);
+        knownSize = index.getFile(source).size();
+    }
+
+    /**
+     * Starts following the file in the background and returns immediately
+     */
+    public void start() {
+        followers.execute(() -> {
+            try {
+                identity = identity(file.toPath());
+                follow();
+            } catch (ClosedWatchServiceException ex) {
+                // Closed by stop()
+            } catch (Exception ex) {
+                if (!stopped) {
+                    listener.followingFailed(ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops following the file. Entries that were already handed out are kept.
+     */
+    public void stop() {
+        stopped = true;
+        WatchService w = watcher;
+        if (w != null) {
+            try {
+                w.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void follow() throws Exception {
+        Path path = file.toPath().toAbsolutePath();
+        try (WatchService w = FileSystems.getDefault().newWatchService()) {
+            watcher = w;
+            path.getParent().register(w, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (!stopped) {
+                check(path);
+                WatchKey key = w.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    // Any event in the folder leads to a check, the events themselves are not needed
+                    key.pollEvents();
+                    key.reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads whatever was appended to the file since the last check
+     */
+    private void check(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            // Between the rename and the creation of a rotated file
+            return;
+        }
+        long size = Files.size(path);
+        Object currentIdentity = identity(path);
+        if (identity != null && !identity.equals(currentIdentity)) {
+            // Rotated, the old file is kept as it was and the new one is read from its start
+            identity = currentIdentity;
+            source = index.addSource(new MappedLogFile(file));
+            lastId = -1;
+            resumeOffset = 0;
+            knownSize = 0;
+        } else if (size < knownSize) {
+            stopped = true;
+            listener.fileTruncated();
+            return;
+        }
+        if (size == knownSize) {
+            return;
+        }
+
+        MappedLogFile mapping = new MappedLogFile(file);
+        index.replaceSource(source, mapping);
+        knownSize = mapping.size();
+        readFrom(mapping);
+    }
+
+    /**
+     * Splits the file from the start of its last entry onwards and adds what is new to the index
+     */
+    private void readFrom(MappedLogFile mapping) throws IOException {
+        List<Entry> appended = new ArrayList<>();
+        int extendedId = -1;
+        TokenIndex.Batch tokenBatch = (tokens != null) ? new TokenIndex.Batch() : null;
+        int firstTokenId = -1;
+        byte[] text = new byte[4096];
+        long start = System.nanoTime();
+        FieldColumns fields = (extractor != null) ? index.getFields() : null;
+        Matcher[] matchers = (fields != null) ? extractor.newMatchers() : null;
+        String[] values = (fields != null) ? new String[fields.getFieldCount()] : null;
+        byte[] line = (fields != null) ? new byte[FieldExtractor.MAX_LINE_LENGTH] : null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.getChannel().position(resumeOffset);
+            EntryAssembler assembler = new EntryAssembler(raf.getChannel(), resumeOffset, detector);
+            while (assembler.next() && !stopped) {
+                long offset = assembler.getOffset();
+                int length = (int) Math.min(assembler.getLength(), Integer.MAX_VALUE);
+                // A line still being written is left for the next check
+                if (offset + length > mapping.size() || length == 0 || mapping.get(offset + length - 1) != '\n') {
+                    break;
+                }
+
+                int id;
+                if (lastId != -1 && offset == index.getOffset(lastId)) {
+                    id = lastId;
+                    if (length == index.getLength(id)) {
+                        continue;
+                    }
+                    index.setLength(id, length);
+                    extendedId = id;
+                } else {
+                    byte[] head = assembler.getHead();
+                    int headLength = assembler.getHeadLength();
+                    id = index.add(source, offset, length, Entry.parseTimestamp(head, 0, headLength),
+                            LogLoader.typePriority(Entry.parseType(head, 0, headLength, mapping.getCharset())));
+                    appended.add(new Entry(index, id));
+                    if (fields != null) {
+                        extractor.extract(mapping, offset, length, line, matchers, values);
+                        LogLoader.addFields(fields, id, values);
+                    }
+                }
+                lastId = id;
+                resumeOffset = offset;
+
+                if (tokenBatch != null) {
+                    if (length > text.length) {
+                        text = new byte[Math.max(length, text.length * 2)];
+                    }
+                    mapping.get(offset, text, 0, length);
+                    if (firstTokenId == -1) {
+                        firstTokenId = id;
+                    }
+                    tokenBatch.addEntry(text, length);
+                }
+            }
+        }
+
+        if (tokenBatch != null && firstTokenId != -1) {
+            tokens.merge(tokenBatch, firstTokenId, System.nanoTime() - start);
+        }
+        if (!appended.isEmpty() || extendedId != -1) {
+            listener.entriesAppended(appended, extendedId);
+        }
+    }
+
+    /**
+     * @return what tells a file apart from a new file of the same name, or null if the platform cannot tell
+     */
+    private static Object identity(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return (attributes.fileKey() != null) ? attributes.fileKey() : attributes.creationTime();
+    }
+}
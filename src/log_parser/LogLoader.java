@@ -0,0 +1,686 @@
+package log_parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+
+/**
+ * Reads a log file off the JavaFX thread and adds its entries to an EntryIndex in batches.
+ *
+ * One reader thread splits the file into entries with an EntryAssembler, the parser threads of the
+ * LoadScheduler read the date and type of each entry from its head, and finished batches are added to the
+ * EntryIndex and handed to the Listener strictly in file order. Entry text is never copied onto the heap.
+ * When a TokenIndex is given, the parser threads also collect the tokens of every entry from the mapped file.
+ * Several files can be loaded into one log, in which case their entries are interleaved by date with an
+ * EntryMerger while they are read.
+ * The first batch only holds FIRST_BATCH_SIZE entries so a tab can show its first screen
+ * long before the rest of the file has been read.
+ * A single file that was read before is taken from its IndexSidecar, see setSidecarDirectory.
+ * A single file larger than a range of RANGE_SIZE bytes is split by several readers at once: the reader
+ * of the load splits the first range, and the following ranges are each split by an EntryAssembler of their
+ * own that resynchronizes on the first entry start of its range. The batches of every range are parsed on
+ * the parser pool and delivered range by range, so types, field values and tokens are still added to
+ * the index by one thread in file order.
+ * A single compressed file is parsed while LogDecoder decodes it: its copy is mapped again whenever it has
+ * grown by DECODED_STEP bytes and the entries complete in it are split, so the first screen of a large
+ * archive shows long before it is decoded. Compressed files that are merged with others are decoded first.
+ * Every thread reading a file takes a disk reader of the LoadScheduler while it reads, so files opened
+ * together are read side by side only as far as the disk allows.
+ *
+ * The loader has no dependency on JavaFX and is also used by LogFile outside of the user interface.
+ */
+public class LogLoader {
+
+    /**
+     * Number of entries in the first batch handed to the listener, enough to fill the first screen
+     */
+    public static final int FIRST_BATCH_SIZE = 50;
+
+    /**
+     * Number of entries handed to the listener at once after the first screen has been filled
+     */
+    public static final int BATCH_SIZE = 5000;
+
+    /**
+     * Upper bound of batches being parsed at the same time, keeps a fast reader from running away
+     */
+    private static final int MAX_PENDING_BATCHES = LoadScheduler.getShared().getParserThreads() * 2;
+
+    /**
+     * Number of bytes of a file split by one reader
+     */
+    private static final long RANGE_SIZE = 16L * 1024 * 1024;
+
+    /**
+     * Upper bound of ranges being split at the same time besides the first one
+     */
+    private static final int MAX_SPLITTING_RANGES = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of bytes a copy being decoded grows by before the entries in it are split
+     */
+    private static final long DECODED_STEP = 1024 * 1024;
+
+    /**
+     * Longest time between two checks of how far a copy has been decoded
+     */
+    private static final long DECODED_POLL_MILLIS = 50;
+
+    private static final ExecutorService readers = Executors.newCachedThreadPool(daemonThreads("log-reader"));
+
+    /**
+     * Receives the results of a load. All methods are called from the loader's own thread.
+     */
+    public interface Listener {
+        /**
+         * @param firstId the id of the first entry added to the EntryIndex
+         * @param count   the number of entries added, their ids follow @param firstId
+         */
+        void entriesParsed(int firstId, int count);
+
+        void progressChanged(long bytesRead, long totalBytes);
+
+        void loadingFinished(boolean cancelled);
+
+        void loadingFailed(Exception ex);
+    }
+
+    private final List<File> files;
+    private final EntryIndex index;
+    private final EntryBoundaryDetector detector;
+    private final TokenIndex tokens;
+    private FieldExtractor extractor;
+    private final Listener listener;
+    private final LoadScheduler scheduler = LoadScheduler.getShared();
+    private volatile boolean cancelled = false;
+    private File sidecarDirectory;
+    private long rangeSize = RANGE_SIZE;
+    private File decodedDirectory = LogDecoder.DEFAULT_DIRECTORY;
+
+    /**
+     * @param file     the log file to read
+     * @param index    the index the rows of the file are added to
+     * @param detector decides which lines of the file start a new entry
+     * @param tokens   the index the tokens of the entries are added to, or null to skip tokenizing
+     * @param listener receives the ids of the entries in file order
+     */
+    public LogLoader(File file, EntryIndex index, EntryBoundaryDetector detector, TokenIndex tokens,
+                     Listener listener) {
+        this(Collections.singletonList(file), index, detector, tokens, listener);
+    }
+
+    /**
+     * @param files    the log files to read and merge by date
+     * @param index    the index the rows of the files are added to
+     * @param detector decides which lines of the files start a new entry
+     * @param tokens   the index the tokens of the entries are added to, or null to skip tokenizing
+     * @param listener receives the ids of the entries in date order
+     */
+    public LogLoader(List<File> files, EntryIndex index, EntryBoundaryDetector detector, TokenIndex tokens,
+                     Listener listener) {
+        this.files = new ArrayList<>(files);
+        this.index = index;
+        this.detector = detector;
+        this.tokens = tokens;
+        this.extractor = FieldExtractor.forFormat(detector);
+        this.listener = listener;
+    }
+
+    /**
+     * Keeps an IndexSidecar of the file, so that reading it again only parses what was appended since.
+     * Only used when a single file is read, and has to be called before start.
+     *
+     * @param directory the folder the sidecars are kept in, or null to always parse the whole file
+     */
+    public void setSidecarDirectory(File directory) {
+        this.sidecarDirectory = directory;
+    }
+
+    /**
+     * Skips pulling fields out of the entries, for reads that do not use them. Has to be called before start.
+     */
+    public void setFieldExtraction(boolean extract) {
+        this.extractor = extract ? FieldExtractor.forFormat(detector) : null;
+    }
+
+    /**
+     * Splits a single file in ranges of another size than RANGE_SIZE, so tests can put many range borders
+     * into a small file. Has to be called before start.
+     */
+    void setRangeSize(long bytes) {
+        this.rangeSize = Math.max(1, bytes);
+    }
+
+    /**
+     * Decodes compressed files into another directory than LogDecoder.DEFAULT_DIRECTORY, such as
+     * LogDecoder.temporaryDirectory(). Has to be called before start.
+     *
+     * @param directory the folder decoded copies are kept in
+     */
+    public void setDecodedDirectory(File directory) {
+        this.decodedDirectory = directory;
+    }
+
+    /**
+     * Starts reading the file in the background and returns immediately
+     */
+    public void start() {
+        readers.execute(() -> {
+            try {
+                load();
+                listener.loadingFinished(cancelled);
+            } catch (Exception ex) {
+                listener.loadingFailed(ex);
+            }
+        });
+    }
+
+    /**
+     * Stops the load as soon as possible. Batches that were already delivered are kept.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void load() throws Exception {
+        try (LoadScheduler.DiskReader disk = scheduler.startReading()) {
+            load(disk);
+        }
+    }
+
+    /**
+     * @param disk the disk reader the files are read with, handed back once the other ranges of the file
+     *             are only waited for
+     */
+    private void load(LoadScheduler.DiskReader disk) throws Exception {
+        if (extractor != null && index.getFields() == null) {
+            index.setFields(new FieldColumns(extractor.getNames()));
+        }
+        long fileBytes = 0;
+        for (File file : files) {
+            fileBytes += file.length();
+        }
+        // Tells the listener the files are being read, they may have waited for the disk until now
+        listener.progressChanged(0, fileBytes);
+
+        if (files.size() == 1) {
+            LogDecoder.Decoding decoding = LogDecoder.start(files.get(0), decodedDirectory);
+            if (!decoding.isDone()) {
+                loadDecoding(files.get(0), decoding);
+                return;
+            }
+        }
+
+        MappedLogFile[] sources = new MappedLogFile[files.size()];
+        File[] contents = new File[sources.length];
+        int[] sourceNumbers = new int[sources.length];
+        long totalBytes = 0;
+        for (int i = 0; i < sources.length; i++) {
+            // Compressed files are decoded to a plain copy first, which is what gets mapped and split
+            contents[i] = LogDecoder.decode(files.get(i), decodedDirectory, (read, total) -> {
+                listener.progressChanged(read, total);
+                return !cancelled;
+            });
+            if (contents[i] == null) {
+                return;
+            }
+            sources[i] = new MappedLogFile(files.get(i), contents[i]);
+            sourceNumbers[i] = index.addSource(sources[i]);
+            totalBytes += sources[i].size();
+        }
+
+        // A file read before only has the bytes from the last entry of its sidecar onwards parsed
+        long[] starts = new long[sources.length];
+        IndexSidecar sidecar = null;
+        long sidecarSize = -1;
+        if (sidecarDirectory != null && sources.length == 1) {
+            sidecar = IndexSidecar.open(sidecarDirectory, sources[0], detector, extractor, tokens != null);
+        }
+        if (sidecar != null) {
+            sidecar.readRows(index, sourceNumbers[0], sidecar.getRowCount() - 1, listener);
+            if (tokens != null) {
+                sidecar.readTokens(tokens);
+            }
+            starts[0] = sidecar.getLastOffset();
+            sidecarSize = sidecar.getSize();
+            // The buffer of the sidecar is not needed while the rest of the file is parsed
+            sidecar = null;
+            listener.progressChanged(starts[0], totalBytes);
+        }
+
+        Deque<Future<Batch>> pending = new ArrayDeque<>();
+        Batch batch = new Batch(FIRST_BATCH_SIZE);
+
+        // The ranges after the first one are split by readers of their own while the first one is read below
+        long[] ranges = (sources.length == 1) ? ranges(starts[0], sources[0].size(), rangeSize) : new long[]{0, Long.MAX_VALUE};
+        Deque<Future<List<Future<Batch>>>> splitting = new ArrayDeque<>();
+        int nextRange = 1;
+        while (nextRange < ranges.length - 1 && splitting.size() < MAX_SPLITTING_RANGES) {
+            splitting.addLast(split(contents[0], sourceNumbers[0], ranges[nextRange], ranges[nextRange + 1]));
+            nextRange++;
+        }
+
+        List<RandomAccessFile> opened = new ArrayList<>();
+        try {
+            List<EntryAssembler> assemblers = new ArrayList<>();
+            for (int i = 0; i < sources.length; i++) {
+                RandomAccessFile raf = new RandomAccessFile(contents[i], "r");
+                opened.add(raf);
+                raf.getChannel().position(starts[i]);
+                assemblers.add(new EntryAssembler(raf.getChannel(), starts[i], ranges[1], false, detector));
+            }
+            EntryMerger merger = new EntryMerger(assemblers);
+            while (merger.next()) {
+                if (cancelled) {
+                    return;
+                }
+                // Only the part of a file that was mapped can be shown
+                if (merger.getOffset() + merger.getLength() > sources[merger.getSource()].size()) {
+                    continue;
+                }
+                batch.add(merger, sourceNumbers[merger.getSource()]);
+
+                if (batch.isFull()) {
+                    submit(batch, pending);
+                    batch = new Batch(BATCH_SIZE);
+                    deliver(pending, false);
+                    listener.progressChanged(Math.min(merger.getPosition(), totalBytes), totalBytes);
+                }
+            }
+        } finally {
+            for (RandomAccessFile raf : opened) {
+                close(raf);
+            }
+        }
+        disk.close();
+
+        if (batch.count > 0) {
+            submit(batch, pending);
+        }
+        for (int range = 2; !splitting.isEmpty(); range++) {
+            if (cancelled) {
+                return;
+            }
+            pending.addAll(splitting.removeFirst().get());
+            if (nextRange < ranges.length - 1) {
+                splitting.addLast(split(contents[0], sourceNumbers[0], ranges[nextRange], ranges[nextRange + 1]));
+                nextRange++;
+            }
+            deliver(pending, false);
+            listener.progressChanged(ranges[range], totalBytes);
+        }
+        deliver(pending, true);
+        if (tokens != null) {
+            tokens.trim();
+        }
+        if (sidecarDirectory != null && sources.length == 1 && !cancelled
+                && sidecarSize != sources[0].size()) {
+            try {
+                IndexSidecar.write(sidecarDirectory, sources[0], index, sourceNumbers[0], detector, extractor, tokens);
+            } catch (IOException e) {
+                // The file is simply parsed again the next time
+                e.printStackTrace();
+            }
+        }
+        listener.progressChanged(totalBytes, totalBytes);
+    }
+
+    /**
+     * Parses a compressed file while it is being decoded, from its first bytes onwards. The last entry of the
+     * bytes decoded so far may go on in bytes that are not decoded yet, so it is only split once another entry
+     * has started after it or the decoding has finished. The copy is not split into ranges, it is written no
+     * faster than one reader splits it.
+     *
+     * @param file     the compressed file
+     * @param decoding the decoding of @param file, which is stopped if the load is cancelled
+     */
+    private void loadDecoding(File file, LogDecoder.Decoding decoding) throws Exception {
+        try {
+            File copy = decoding.getCopy();
+            Deque<Future<Batch>> pending = new ArrayDeque<>();
+            Batch batch = new Batch(FIRST_BATCH_SIZE);
+            MappedLogFile mapping = null;
+            int source = -1;
+            long resume = 0;
+            boolean finished = false;
+            while (!finished) {
+                if (cancelled) {
+                    return;
+                }
+                finished = decoding.await(DECODED_POLL_MILLIS);
+                if (!finished && copy.length() < ((mapping == null) ? 0 : mapping.size()) + DECODED_STEP) {
+                    listener.progressChanged(decoding.getBytesRead(), decoding.getArchiveSize());
+                    continue;
+                }
+                if (finished && !decoding.get()) {
+                    return;
+                }
+
+                mapping = new MappedLogFile(file, copy);
+                if (source == -1) {
+                    source = index.addSource(mapping);
+                } else {
+                    index.replaceSource(source, mapping);
+                }
+                EntryAssembler assembler = new EntryAssembler(new MappedChannel(mapping, resume), resume, detector);
+                while (assembler.next()) {
+                    if (cancelled) {
+                        return;
+                    }
+                    if (!finished && assembler.getOffset() + assembler.getLength() >= mapping.size()) {
+                        resume = assembler.getOffset();
+                        break;
+                    }
+                    batch.add(assembler, source);
+                    if (batch.isFull()) {
+                        submit(batch, pending);
+                        batch = new Batch(BATCH_SIZE);
+                        deliver(pending, false);
+                    }
+                }
+                // The entries decoded so far are shown without waiting for a full batch
+                if (batch.count > 0) {
+                    submit(batch, pending);
+                    batch = new Batch(BATCH_SIZE);
+                }
+                deliver(pending, false);
+                listener.progressChanged(decoding.getBytesRead(), decoding.getArchiveSize());
+            }
+            deliver(pending, true);
+            if (tokens != null) {
+                tokens.trim();
+            }
+            if (sidecarDirectory != null && !cancelled) {
+                try {
+                    IndexSidecar.write(sidecarDirectory, mapping, index, source, detector, extractor, tokens);
+                } catch (IOException e) {
+                    // The copy is simply parsed again the next time
+                    e.printStackTrace();
+                }
+            }
+            listener.progressChanged(decoding.getArchiveSize(), decoding.getArchiveSize());
+        } finally {
+            decoding.stop();
+        }
+    }
+
+    /**
+     * @return the offsets the ranges of a file start at, ending with the size of the file. A file that is
+     * not larger than @param rangeSize from @param start onwards is one range.
+     */
+    private static long[] ranges(long start, long size, long rangeSize) {
+        int count = (int) Math.max(1, (size - start + rangeSize - 1) / rangeSize);
+        long[] ranges = new long[count + 1];
+        for (int i = 0; i < count; i++) {
+            ranges[i] = start + i * rangeSize;
+        }
+        ranges[count] = Math.max(start, size);
+        return ranges;
+    }
+
+    /**
+     * Splits the entries starting in a range of a file on a reader thread of its own, and queues them in
+     * batches to be parsed by the parser pool
+     *
+     * @return the parsed batches of the range in file order
+     */
+    private Future<List<Future<Batch>>> split(File contents, int source, long from, long to) {
+        return readers.submit(() -> {
+            List<Future<Batch>> batches = new ArrayList<>();
+            MappedLogFile mapped = index.getFile(source);
+            LoadScheduler.DiskReader disk = scheduler.startReading();
+            try (RandomAccessFile raf = new RandomAccessFile(contents, "r")) {
+                raf.getChannel().position(from - 1);
+                EntryAssembler assembler = new EntryAssembler(raf.getChannel(), from, to, true, detector);
+                Batch batch = new Batch(BATCH_SIZE);
+                while (assembler.next() && !cancelled) {
+                    if (assembler.getOffset() + assembler.getLength() > mapped.size()) {
+                        continue;
+                    }
+                    batch.add(assembler, source);
+                    if (batch.isFull()) {
+                        submit(batch, batches);
+                        batch = new Batch(BATCH_SIZE);
+                    }
+                }
+                // The range has been read, queueing its last batch does not need the disk
+                disk.close();
+                if (batch.count > 0) {
+                    submit(batch, batches);
+                }
+            } finally {
+                disk.close();
+            }
+            return batches;
+        });
+    }
+
+    private static void close(RandomAccessFile raf) {
+        try {
+            raf.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Queues a batch of entry locations to have their dates and types parsed by the parser pool
+     */
+    private void submit(final Batch batch, Collection<Future<Batch>> pending) {
+        pending.add(scheduler.parse(() -> {
+            for (int i = 0; i < batch.count; i++) {
+                int head = i * EntryAssembler.HEAD_SIZE;
+                batch.timestamps[i] = Entry.parseTimestamp(batch.heads, head, batch.headLengths[i]);
+                batch.types[i] = Entry.parseType(batch.heads, head, batch.headLengths[i],
+                        index.getFile(batch.sources[i]).getCharset());
+            }
+            if (tokens != null) {
+                tokenize(index, batch);
+            }
+            if (extractor != null) {
+                extractFields(index, extractor, batch);
+            }
+            return batch;
+        }));
+    }
+
+    /**
+     * Collects the tokens of every entry of a batch, reading the text straight from the mapping
+     */
+    private static void tokenize(EntryIndex index, Batch batch) {
+        long start = System.nanoTime();
+        TokenIndex.Batch tokenBatch = new TokenIndex.Batch();
+        byte[] text = new byte[4096];
+        for (int i = 0; i < batch.count; i++) {
+            int length = batch.lengths[i];
+            if (length > text.length) {
+                text = new byte[Math.max(length, text.length * 2)];
+            }
+            index.getFile(batch.sources[i]).get(batch.offsets[i], text, 0, length);
+            tokenBatch.addEntry(text, length);
+        }
+        batch.tokens = tokenBatch;
+        batch.tokenNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Pulls the fields of every entry of a batch out of its first line, reading it straight from the mapping
+     */
+    private static void extractFields(EntryIndex index, FieldExtractor extractor, Batch batch) {
+        Matcher[] matchers = extractor.newMatchers();
+        byte[] line = new byte[FieldExtractor.MAX_LINE_LENGTH];
+        batch.fieldValues = new String[batch.count][matchers.length];
+        for (int i = 0; i < batch.count; i++) {
+            extractor.extract(index.getFile(batch.sources[i]), batch.offsets[i], batch.lengths[i], line, matchers,
+                    batch.fieldValues[i]);
+        }
+    }
+
+    /**
+     * Adds values extracted by a FieldExtractor to the columns of an index, interning them in its dictionaries
+     *
+     * @param fields the columns of the index
+     * @param id     the id of the row the values belong to
+     * @param values the value of every field, or null where a field was not found
+     */
+    static void addFields(FieldColumns fields, int id, String[] values) {
+        int[] codes = new int[values.length];
+        for (int f = 0; f < values.length; f++) {
+            codes[f] = fields.getDictionary(f).intern(values[f]);
+        }
+        fields.add(id, codes);
+    }
+
+    /**
+     * Adds finished batches to the index and hands their ids to the listener in the order
+     * they were submitted.
+     *
+     * @param pending batches that are still owned by the loader
+     * @param all     true to wait for every pending batch, otherwise only finished batches are handed
+     *                over and the loader only waits when too many batches are in flight
+     */
+    private void deliver(Deque<Future<Batch>> pending, boolean all) throws Exception {
+        while (!pending.isEmpty() && !cancelled) {
+            Future<Batch> head = pending.peekFirst();
+            if (!all && !head.isDone() && pending.size() < MAX_PENDING_BATCHES) {
+                return;
+            }
+            Batch batch = head.get();
+            int firstId = index.size();
+            for (int i = 0; i < batch.count; i++) {
+                index.add(batch.sources[i], batch.offsets[i], batch.lengths[i], batch.timestamps[i],
+                        typePriority(batch.types[i]));
+            }
+            if (batch.tokens != null && batch.count > 0) {
+                tokens.merge(batch.tokens, firstId, batch.tokenNanos);
+            }
+            if (batch.fieldValues != null) {
+                for (int i = 0; i < batch.count; i++) {
+                    addFields(index.getFields(), firstId + i, batch.fieldValues[i]);
+                }
+            }
+            listener.entriesParsed(firstId, batch.count);
+            pending.removeFirst();
+        }
+    }
+
+    /**
+     * Registers a type and returns the priority stored for it in the EntryIndex
+     *
+     * @param type a type parsed from an entry, or null
+     * @return the priority of @param type, or EntryIndex.UNKNOWN_TYPE if it has none that fits in the index
+     */
+    static byte typePriority(String type) {
+        int priority = EntryTypes.addEntryType(type);
+        return (priority >= 0 && priority <= Byte.MAX_VALUE) ? (byte) priority : EntryIndex.UNKNOWN_TYPE;
+    }
+
+    /**
+     * The locations of a run of entries, and their dates and types once the batch has been parsed
+     */
+    private static class Batch {
+        final int[] sources;
+        final long[] offsets;
+        final int[] lengths;
+        final byte[] heads;
+        final int[] headLengths;
+        final long[] timestamps;
+        final String[] types;
+        TokenIndex.Batch tokens;
+        long tokenNanos;
+        String[][] fieldValues;
+        int count = 0;
+
+        Batch(int capacity) {
+            sources = new int[capacity];
+            offsets = new long[capacity];
+            lengths = new int[capacity];
+            heads = new byte[capacity * EntryAssembler.HEAD_SIZE];
+            headLengths = new int[capacity];
+            timestamps = new long[capacity];
+            types = new String[capacity];
+        }
+
+        void add(EntryMerger merger, int source) {
+            add(merger.getOffset(), merger.getLength(), merger.getHead(), merger.getHeadLength(), source);
+        }
+
+        void add(EntryAssembler assembler, int source) {
+            add(assembler.getOffset(), assembler.getLength(), assembler.getHead(), assembler.getHeadLength(), source);
+        }
+
+        private void add(long offset, long length, byte[] head, int headLength, int source) {
+            sources[count] = source;
+            offsets[count] = offset;
+            lengths[count] = (int) Math.min(length, Integer.MAX_VALUE);
+            headLengths[count] = headLength;
+            System.arraycopy(head, 0, heads, count * EntryAssembler.HEAD_SIZE, headLength);
+            count++;
+        }
+
+        boolean isFull() {
+            return count == offsets.length;
+        }
+    }
+
+    /**
+     * Reads a mapping from an offset up to the end of the mapping, so a copy that is still growing is only
+     * split as far as it was mapped
+     */
+    private static class MappedChannel implements ReadableByteChannel {
+        private final MappedLogFile mapping;
+        private final byte[] chunk = new byte[1 << 16];
+        private long position;
+
+        MappedChannel(MappedLogFile mapping, long position) {
+            this.mapping = mapping;
+            this.position = position;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (position >= mapping.size()) {
+                return -1;
+            }
+            int count = (int) Math.min(Math.min(dst.remaining(), chunk.length), mapping.size() - position);
+            mapping.get(position, chunk, 0, count);
+            dst.put(chunk, 0, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    static ThreadFactory daemonThreads(final String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
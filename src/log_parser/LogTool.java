@@ -0,0 +1,226 @@
+package log_parser;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Command line front end for searching and combining logs from scripts, without the user interface.
+ *
+ *   grep  [options] query file...   prints the entries of each file matching the query
+ *   count [options] query file...   prints the number of matching entries of each file
+ *   merge [options] file...         prints the entries of all files interleaved by date
+ *
+ * Options:
+ *   --query q      only prints the entries matching q, for merge
+ *   --detector d   the entry start format, one of DATE, ISO_8601, SYSLOG and EPOCH, DATE by default
+ *   --sort s       sorts the entries by Date or Type instead of printing them in file order
+ *   --titles       prints the title of each entry instead of its full text
+ *   --cache        keeps an IndexSidecar of each file, so a file read before is not parsed again, and keeps
+ *                  the decoded copies of compressed files. Without it they are deleted when the tool exits.
+ *
+ * Without --sort and --cache the files are searched while they are being read and the entries are printed as
+ * they are found, so files of any size can be searched in bounded memory.
+ *
+ * Queries use the syntax of QueryParser. Entries are copied to standard output as the bytes they are
+ * in the file, so the output can be piped into other tools. The exit status is 0 if an entry was
+ * printed or counted, 1 if nothing matched and 2 if the arguments or a file could not be used,
+ * the same as grep.
+ */
+public class LogTool {
+
+    private static final String USAGE = "Usage: LogTool grep|count [options] query file...\n"
+            + "       LogTool merge [options] file...\n"
+            + "Options: --query q, --detector DATE|ISO_8601|SYSLOG|EPOCH, --sort Date|Type, --titles, --cache";
+
+    private String command;
+    private String query;
+    private EntryBoundaryDetector detector = StandardBoundaryDetector.DATE;
+    private String sortOption;
+    private boolean titles = false;
+    private File sidecarDirectory;
+    private final List<File> files = new ArrayList<>();
+    private byte[] bytes = new byte[8192];
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs one command
+     *
+     * @param args the command line
+     * @param out  receives the entries
+     * @param err  receives messages about wrong arguments and unreadable files
+     * @return the exit status
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        LogTool tool = new LogTool();
+        try {
+            tool.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        try {
+            OutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+            boolean found = tool.execute(buffered);
+            buffered.flush();
+            return found ? 0 : 1;
+        } catch (IllegalArgumentException e) {
+            err.println("Invalid query: " + e.getMessage());
+            return 2;
+        } catch (IOException e) {
+            err.println("Could not read log: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    private void parseArguments(String[] args) {
+        List<String> operands = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--titles")) {
+                titles = true;
+            } else if (arg.equals("--cache")) {
+                sidecarDirectory = IndexSidecar.DEFAULT_DIRECTORY;
+            } else if (arg.equals("--query") || arg.equals("--detector") || arg.equals("--sort")) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException(arg + " needs a value");
+                }
+                String value = args[++i];
+                if (arg.equals("--query")) {
+                    query = value;
+                } else if (arg.equals("--detector")) {
+                    detector = detector(value);
+                } else {
+                    sortOption = sortOption(value);
+                }
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            } else {
+                operands.add(arg);
+            }
+        }
+
+        if (operands.isEmpty()) {
+            throw new IllegalArgumentException("No command given");
+        }
+        command = operands.remove(0);
+        if (command.equals("grep") || command.equals("count")) {
+            if (operands.isEmpty()) {
+                throw new IllegalArgumentException("No query given");
+            }
+            query = operands.remove(0);
+        } else if (!command.equals("merge")) {
+            throw new IllegalArgumentException("Unknown command " + command);
+        }
+        if (operands.isEmpty()) {
+            throw new IllegalArgumentException("No files given");
+        }
+        for (String name : operands) {
+            files.add(new File(name));
+        }
+    }
+
+    private static EntryBoundaryDetector detector(String name) {
+        try {
+            return StandardBoundaryDetector.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown detector " + name);
+        }
+    }
+
+    private static String sortOption(String name) {
+        if (name.equalsIgnoreCase("Date")) {
+            return "Date";
+        } else if (name.equalsIgnoreCase("Type")) {
+            return "Type";
+        }
+        throw new IllegalArgumentException("Unknown sort option " + name);
+    }
+
+    /**
+     * @return true if any entry was printed or counted
+     */
+    private boolean execute(OutputStream out) throws IOException {
+        // Parse the query before reading any file so a typo fails fast
+        Query parsed = (query == null) ? null : QueryParser.parse(query);
+        // Sorting needs every entry and a sidecar is written from the whole index, otherwise the files
+        // are searched while they are read and their entries are not kept
+        boolean streaming = sortOption == null && sidecarDirectory == null;
+
+        if (command.equals("merge")) {
+            if (streaming) {
+                return LogFile.stream(files, detector, parsed, (index, id) -> write(index, id, out)) > 0;
+            }
+            return print(LogFile.open(files, detector, false, sidecarDirectory), parsed, out) > 0;
+        }
+        boolean found = false;
+        for (File file : files) {
+            int count;
+            if (streaming) {
+                LogFile.MatchListener listener = command.equals("count")
+                        ? (index, id) -> { }
+                        : (index, id) -> write(index, id, out);
+                count = LogFile.stream(Collections.singletonList(file), detector, parsed, listener);
+            } else {
+                LogFile log = LogFile.open(file, detector, false, sidecarDirectory);
+                count = command.equals("count") ? log.search(parsed).length : print(log, parsed, out);
+            }
+            if (command.equals("count")) {
+                String line = ((files.size() > 1) ? file.getPath() + ":" : "") + count + "\n";
+                out.write(line.getBytes(Charset.defaultCharset()));
+            }
+            found |= count > 0;
+        }
+        return found;
+    }
+
+    /**
+     * Writes the entries of @param log matching @param query to @param out
+     *
+     * @return the number of entries written
+     */
+    private int print(LogFile log, Query query, OutputStream out) throws IOException {
+        int[] ids = (query == null) ? log.ids() : log.search(query);
+        if (sortOption != null) {
+            log.sort(ids, sortOption);
+        }
+
+        for (int id : ids) {
+            write(log.getIndex(), id, out);
+        }
+        return ids.length;
+    }
+
+    /**
+     * Writes one entry, or its title, to @param out
+     */
+    private void write(EntryIndex index, int id, OutputStream out) throws IOException {
+        if (titles) {
+            String title = new Entry(index, id).getTitle();
+            out.write(title.getBytes(index.getSource(id).getCharset()));
+            out.write('\n');
+            return;
+        }
+        int length = index.getLength(id);
+        if (length > bytes.length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        index.getSource(id).get(index.getOffset(id), bytes, 0, length);
+        out.write(bytes, 0, length);
+        // The last entry of a file may not end with a line break
+        if (length > 0 && bytes[length - 1] != '\n') {
+            out.write('\n');
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package log_parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A read-only, memory-mapped view of a log file.
+ *
+ * The file is mapped in segments of at most SEGMENT_SIZE bytes so files larger than 2 GB can be
+ * addressed with plain long offsets. The text of an entry is only decoded when it is asked for,
+ * so the heap does not hold a copy of the file.
+ */
+public class MappedLogFile {
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = (int) SEGMENT_SIZE - 1;
+
+    private final File file;
+    private final long size;
+    private final MappedByteBuffer[] segments;
+    private final Charset charset;
+
+    /**
+     * Maps the whole file as it is at the time of the call
+     *
+     * @param file the log file to map
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedLogFile(File file) throws IOException {
+        this(file, file);
+    }
+
+    /**
+     * Maps a copy of a file, such as the decompressed contents of an archived log
+     *
+     * @param file     the log file the user opened, returned by getFile
+     * @param contents the file holding the bytes of @param file
+     * @throws IOException if @param contents cannot be opened or mapped
+     */
+    public MappedLogFile(File file, File contents) throws IOException {
+        this.file = file;
+        this.charset = Charset.defaultCharset();
+        try (RandomAccessFile raf = new RandomAccessFile(contents, "r");
+             FileChannel channel = raf.getChannel()) {
+            size = channel.size();
+            segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the mapped file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     *
+     * @return the encoding the text of the file is decoded with
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     *
+     * @return the number of bytes that were mapped
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     *
+     * @param position an offset in the file
+     * @return the byte at @param position
+     */
+    public byte get(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) position & SEGMENT_MASK);
+    }
+
+    /**
+     * Copies bytes out of the mapping, crossing segment borders where needed
+     *
+     * @param position the offset in the file to start copying from
+     * @param dst      the array to copy into
+     * @param offset   the first index in @param dst to write
+     * @param length   the number of bytes to copy
+     */
+    public void get(long position, byte[] dst, int offset, int length) {
+        while (length > 0) {
+            ByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)].duplicate();
+            int start = (int) position & SEGMENT_MASK;
+            int count = Math.min(length, segment.limit() - start);
+            segment.position(start);
+            segment.get(dst, offset, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Decodes a region of the file into text
+     *
+     * @param position the offset of the first byte
+     * @param length   the number of bytes to decode
+     * @return the text stored in the region
+     */
+    public String decode(long position, int length) {
+        byte[] bytes = new byte[length];
+        get(position, bytes, 0, length);
+        return new String(bytes, charset);
+    }
+}
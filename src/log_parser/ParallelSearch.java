@@ -0,0 +1,174 @@
+package log_parser;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates a Query against many entries on all cores.
+ *
+ * The ids to scan are cut into chunks of CHUNK_SIZE entries that are split across a ForkJoinPool. Each
+ * chunk moves one EntryText over its entries, so an entry's bytes are only copied out of its
+ * MappedLogFile, into one reused buffer, when a predicate of the query needs its text. The matches
+ * of the chunks are joined in the order of the ids that were passed in.
+ *
+ * A search can also be run a slice of SLICE_SIZE ids at a time, handing the matches of every slice to a
+ * Listener before the next one is searched, so its first matches can be shown while it runs and it can be
+ * stopped between slices.
+ */
+public class ParallelSearch {
+
+    /**
+     * Number of entries one task scans before the work is not split any further
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Number of ids searched before the matches found among them are handed to a Listener
+     */
+    private static final int SLICE_SIZE = 32 * CHUNK_SIZE;
+
+    static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Receives the matches of a search a slice at a time
+     */
+    public interface Listener {
+        /**
+         *
+         * @param matches the matches among the next slice of ids, in the order the ids were given
+         * @return false to stop the search
+         */
+        boolean matchesFound(int[] matches);
+    }
+
+    private ParallelSearch() {
+    }
+
+    /**
+     * Finds the entries matching @param query among the first @param count entries. Text terms are looked up
+     * in @param tokens first if it is given, and only the entries the token index cannot rule out are scanned.
+     *
+     * @param index  the index holding the entries' files, offsets and lengths
+     * @param tokens the token index of all @param count entries, or null to scan every entry
+     * @param count  the number of entries to search
+     * @param query  the query to evaluate
+     * @return the ids of the matching entries in file order, ids of the token index from @param count on included
+     */
+    public static int[] search(EntryIndex index, TokenIndex tokens, int count, Query query) {
+        if (tokens == null) {
+            return search(index, (int[]) null, count, query);
+        }
+        int[] candidates = query.candidates(tokens);
+        if (candidates == null) {
+            return search(index, (int[]) null, count, query);
+        }
+        return query.isExact() ? candidates : search(index, candidates, candidates.length, query);
+    }
+
+    /**
+     * Finds the entries matching @param query
+     *
+     * @param index    the index holding the entries' files, offsets and lengths
+     * @param ids      the ids of the entries to scan, or null to scan the first @param count ids
+     * @param count    the number of ids to scan
+     * @param query    the query to evaluate
+     * @return the ids of the matching entries, in the order they were given
+     */
+    public static int[] search(EntryIndex index, int[] ids, int count, Query query) {
+        return search(index, ids, 0, count, query);
+    }
+
+    /**
+     * Finds the entries matching @param query a slice at a time
+     *
+     * @param index    the index holding the entries' files, offsets and lengths
+     * @param ids      the ids of the entries to scan, or null to scan the first @param count ids
+     * @param count    the number of ids to scan
+     * @param query    the query to evaluate
+     * @param listener receives the matches of every slice, in the order the ids were given
+     * @return false if @param listener stopped the search
+     */
+    public static boolean search(EntryIndex index, int[] ids, int count, Query query, Listener listener) {
+        for (int from = 0; from < count; from += SLICE_SIZE) {
+            if (!listener.matchesFound(search(index, ids, from, Math.min(count, from + SLICE_SIZE), query))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the entries matching @param query among the ids from @param from up to @param to
+     */
+    private static int[] search(EntryIndex index, int[] ids, int from, int to, Query query) {
+        int[][] results = new int[(to - from + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        pool.invoke(new ScanTask(index, ids, from, to, query, results, 0, results.length));
+
+        int total = 0;
+        for (int[] chunk : results) {
+            total += chunk.length;
+        }
+        int[] matches = new int[total];
+        int position = 0;
+        for (int[] chunk : results) {
+            System.arraycopy(chunk, 0, matches, position, chunk.length);
+            position += chunk.length;
+        }
+        return matches;
+    }
+
+    /**
+     * Scans the chunks from first up to last, splitting the range in half while it holds more than one chunk
+     */
+    @SuppressWarnings("serial")
+    private static class ScanTask extends RecursiveAction {
+        private final EntryIndex index;
+        private final int[] ids;
+        private final int from;
+        private final int to;
+        private final Query query;
+        private final int[][] results;
+        private final int first;
+        private final int last;
+
+        ScanTask(EntryIndex index, int[] ids, int from, int to, Query query,
+                 int[][] results, int first, int last) {
+            this.index = index;
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+            this.query = query;
+            this.results = results;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > 1) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new ScanTask(index, ids, from, to, query, results, first, middle),
+                        new ScanTask(index, ids, from, to, query, results, middle, last));
+                return;
+            }
+            for (int chunk = first; chunk < last; chunk++) {
+                results[chunk] = scan(from + chunk * CHUNK_SIZE, Math.min(to, from + (chunk + 1) * CHUNK_SIZE));
+            }
+        }
+
+        private int[] scan(int from, int to) {
+            EntryText entry = new EntryText(index);
+            int[] matches = new int[to - from];
+            int found = 0;
+            for (int i = from; i < to; i++) {
+                int id = (ids == null) ? i : ids[i];
+                entry.moveTo(id);
+                if (query.matches(entry)) {
+                    matches[found++] = id;
+                }
+            }
+            return (found == matches.length) ? matches : Arrays.copyOf(matches, found);
+        }
+    }
+}
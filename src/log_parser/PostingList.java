@@ -0,0 +1,122 @@
+package log_parser;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The ids of the entries containing one token, in ascending order. Ids are stored as the
+ * difference to the previous id in a variable length encoding, so a token found in consecutive
+ * entries costs about one byte per entry.
+ */
+public class PostingList {
+
+    private byte[] data = new byte[4];
+    private int length = 0;
+    private int size = 0;
+    private int last = -1;
+
+    /**
+     * Appends an id, ids that are not larger than the last one added are ignored
+     *
+     * @param id the id of an entry containing the token
+     */
+    public void add(int id) {
+        if (id <= last) {
+            return;
+        }
+        int delta = id - last;
+        last = id;
+        size++;
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+        }
+        while ((delta & ~0x7F) != 0) {
+            data[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+    }
+
+    /**
+     *
+     * @return the number of ids in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *
+     * @return the last id that was added, or -1
+     */
+    public int last() {
+        return last;
+    }
+
+    /**
+     *
+     * @return the ids in ascending order
+     */
+    public int[] toArray() {
+        int[] ids = new int[size];
+        int id = -1;
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += delta;
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Releases the unused part of the buffer once no more ids are expected
+     */
+    public void trim() {
+        if (data.length != length) {
+            data = Arrays.copyOf(data, length);
+        }
+    }
+
+    /**
+     *
+     * @return the approximate number of bytes the list takes on the heap
+     */
+    public long memoryUsage() {
+        return 32 + 16 + data.length;
+    }
+
+    /**
+     * Writes the list in its encoded form, see read
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(last);
+        out.writeInt(length);
+        out.write(data, 0, length);
+    }
+
+    /**
+     * Reads a list written by write
+     *
+     * @param in positioned at the start of the list, and after it once the list has been read
+     */
+    static PostingList read(ByteBuffer in) {
+        PostingList list = new PostingList();
+        list.size = in.getInt();
+        list.last = in.getInt();
+        list.length = in.getInt();
+        list.data = new byte[list.length];
+        in.get(list.data);
+        return list;
+    }
+}
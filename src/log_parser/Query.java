@@ -0,0 +1,521 @@
+package log_parser;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled search query, a tree of predicates that is evaluated once per entry.
+ *
+ * Queries are built by QueryParser. Every predicate knows roughly how expensive it is, and AND and OR
+ * evaluate their children cheapest first, stopping as soon as the result is known. Predicates on the
+ * date, type and fields of an entry read the EntryIndex or its FieldColumns, only text
+ * predicates look at the whole entry. A Query holds no state between entries other than what it
+ * resolved from the index, so one Query can be evaluated by many threads at once.
+ */
+public abstract class Query {
+
+    /**
+     * Relative costs of evaluating a predicate against one entry
+     */
+    static final int COST_INDEX = 1;
+    static final int COST_HEAD = 10;
+    static final int COST_TEXT = 100;
+    static final int COST_REGEX = 1000;
+
+    /**
+     *
+     * @param entry the entry to test
+     * @return true if @param entry matches the query
+     */
+    public abstract boolean matches(EntryText entry);
+
+    /**
+     *
+     * @return the relative cost of evaluating the query against one entry
+     */
+    abstract int cost();
+
+    /**
+     * Narrows down the entries that can match the query with a token index
+     *
+     * @param tokens the token index of the log
+     * @return the ids of the entries that may match in ascending order, or null if any entry may match
+     */
+    int[] candidates(TokenIndex tokens) {
+        return null;
+    }
+
+    /**
+     *
+     * @return true if candidates(TokenIndex) returns exactly the matching entries, so they need no scan
+     */
+    boolean isExact() {
+        return false;
+    }
+
+    /**
+     *
+     * @return true if the query can only be answered with the FieldColumns of the log
+     */
+    boolean needsFields() {
+        return false;
+    }
+
+    /**
+     * Tells from the shape of two queries whether every entry matching this query also matches another,
+     * so that only the entries found by @param wider have to be searched
+     *
+     * @param wider a query searched before
+     * @return true if this query only finds entries that @param wider finds, false if that is not known
+     */
+    boolean narrows(Query wider) {
+        if (wider instanceof Combination) {
+            Combination combination = (Combination) wider;
+            for (Query query : combination.queries) {
+                if (narrows(query) != combination.matchAll) {
+                    return !combination.matchAll;
+                }
+            }
+            return combination.matchAll;
+        }
+        return toString().equals(wider.toString());
+    }
+
+    /**
+     * Finds the entries containing a piece of text, ignoring case
+     */
+    static class Contains extends Query {
+        private final String keyword;
+        private final SubstringMatcher matcher;
+
+        Contains(String keyword) {
+            this.keyword = keyword.toLowerCase(Locale.ROOT);
+            // Entries are decoded with the default charset, see MappedLogFile
+            this.matcher = new SubstringMatcher(this.keyword, Charset.defaultCharset());
+        }
+
+        @Override
+        public boolean matches(EntryText entry) {
+            return matcher.matches(entry.getBytes(), entry.getLength(), entry.getCharset());
+        }
+
+        @Override
+        int cost() {
+            return COST_TEXT;
+        }
+
+        @Override
+        int[] candidates(TokenIndex tokens) {
+            return TokenIndex.isTokenAligned(keyword) ? tokens.find(keyword) : tokens.candidates(keyword);
+        }
+
+        @Override
+        boolean isExact() {
+            return TokenIndex.isTokenAligned(keyword);
+        }
+
+        @Override
+        boolean narrows(Query wider) {
+            // Text containing "wfevents4" also contains "wfevents"
+            if (wider instanceof Contains) {
+                return keyword.contains(((Contains) wider).keyword);
+            }
+            return super.narrows(wider);
+        }
+
+        @Override
+        public String toString() {
+            return "\"" + keyword + "\"";
+        }
+    }
+
+    /**
+     * Finds the entries with a match of a regular expression, ignoring case
+     */
+    static class Regex extends Query {
+        private final Pattern pattern;
+
+        Regex(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean matches(EntryText entry) {
+            return pattern.matcher(entry.getText()).find();
+        }
+
+        @Override
+        int cost() {
+            return COST_REGEX;
+        }
+
+        @Override
+        public String toString() {
+            return "/" + pattern.pattern() + "/";
+        }
+    }
+
+    /**
+     * Finds the entries of one type, such as ERROR, ignoring case
+     */
+    static class TypeIs extends Query {
+        private static final byte UNRESOLVED = 0;
+        private static final byte MATCH = 1;
+        private static final byte NO_MATCH = 2;
+
+        private final String type;
+
+        /**
+         * Whether each type priority matches, resolved the first time an entry of that priority is seen.
+         * Threads may resolve the same priority more than once, they always come to the same result.
+         */
+        private final byte[] priorities = new byte[Byte.MAX_VALUE + 1];
+
+        TypeIs(String type) {
+            this.type = type;
+        }
+
+        @Override
+        public boolean matches(EntryText entry) {
+            byte priority = entry.getTypePriority();
+            if (priority == EntryIndex.UNKNOWN_TYPE) {
+                return type.equalsIgnoreCase(entry.getType());
+            }
+            if (priorities[priority] == UNRESOLVED) {
+                priorities[priority] = type.equalsIgnoreCase(EntryTypes.getEntryType(priority)) ? MATCH : NO_MATCH;
+            }
+            return priorities[priority] == MATCH;
+        }
+
+        @Override
+        int cost() {
+            return COST_INDEX;
+        }
+
+        @Override
+        public String toString() {
+            return "type:" + type;
+        }
+    }
+
+    /**
+     * Base of the predicates on a field pulled out by a FieldExtractor. The values of the field's
+     * dictionary that match are resolved once per FieldColumns, after which an entry is tested by looking
+     * up its code. Values added to the dictionary since are compared one by one.
+     */
+    abstract static class FieldMatch extends Query {
+        final String field;
+        private volatile Resolved resolved;
+
+        FieldMatch(String field) {
+            this.field = field;
+        }
+
+        /**
+         *
+         * @param value a value of the field
+         * @return true if entries with @param value match
+         */
+        abstract boolean matchesValue(String value);
+
+        /**
+         * Tests an entry of a log whose format has no such field
+         */
+        boolean matchesText(EntryText entry) {
+            return false;
+        }
+
+        @Override
+        public boolean matches(EntryText entry) {
+            FieldColumns fields = entry.getFields();
+            Resolved r = resolved;
+            if (r == null || r.fields != fields) {
+                r = new Resolved(fields);
+                resolved = r;
+            }
+            if (r.field == -1) {
+                return matchesText(entry);
+            }
+            int code = fields.getCode(r.field, entry.getId());
+            if (code == StringDictionary.MISSING) {
+                return false;
+            }
+            if (code < r.size) {
+                return r.matching.get(code);
+            }
+            return matchesValue(fields.getDictionary(r.field).get(code));
+        }
+
+        @Override
+        int cost() {
+            return COST_INDEX;
+        }
+
+        /**
+         * The column of the field in one FieldColumns, and which codes below size match
+         */
+        private class Resolved {
+            final FieldColumns fields;
+            final int field;
+            final int size;
+            final BitSet matching = new BitSet();
+
+            Resolved(FieldColumns fields) {
+                this.fields = fields;
+                this.field = (fields == null) ? -1 : fields.getField(FieldMatch.this.field);
+                StringDictionary dictionary = (field == -1) ? null : fields.getDictionary(field);
+                this.size = (dictionary == null) ? 0 : dictionary.size();
+                for (int code = 0; code < size; code++) {
+                    if (matchesValue(dictionary.get(code))) {
+                        matching.set(code);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the entries whose field, such as ip or account, has a value, ignoring case
+     */
+    static class FieldIs extends FieldMatch {
+        private final String value;
+
+        FieldIs(String field, String value) {
+            super(field);
+            this.value = value;
+        }
+
+        @Override
+        boolean matchesValue(String value) {
+            return this.value.equalsIgnoreCase(value);
+        }
+
+        @Override
+        boolean needsFields() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return field + ":" + value;
+        }
+    }
+
+    /**
+     * Finds the entries written by a logger or by any logger below it, so "com.tririga" also finds
+     * "com.tririga.XSS". The logger field is used where the format has one, otherwise the first line
+     * of the entry is parsed.
+     */
+    static class LoggerIs extends FieldMatch {
+        private final String logger;
+
+        LoggerIs(String logger) {
+            super("logger");
+            this.logger = logger;
+        }
+
+        @Override
+        boolean matchesValue(String name) {
+            return name != null && name.regionMatches(true, 0, logger, 0, logger.length())
+                    && (name.length() == logger.length() || name.charAt(logger.length()) == '.');
+        }
+
+        @Override
+        boolean matchesText(EntryText entry) {
+            return matchesValue(entry.getLogger());
+        }
+
+        @Override
+        public String toString() {
+            return "logger:" + logger;
+        }
+    }
+
+    /**
+     * Finds the entries dated within a range. The range either holds two dates, or two times of day
+     * that match entries of any day. A time of day range whose end is before its start runs over midnight.
+     */
+    static class TimeRange extends Query {
+        static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+        private final long from;
+        private final long to;
+        private final boolean timeOfDay;
+
+        /**
+         * @param from      the first date or time of day to match, inclusive
+         * @param to        the last date or time of day to match, inclusive
+         * @param timeOfDay true if @param from and @param to are milliseconds since midnight
+         */
+        TimeRange(long from, long to, boolean timeOfDay) {
+            this.from = from;
+            this.to = to;
+            this.timeOfDay = timeOfDay;
+        }
+
+        @Override
+        public boolean matches(EntryText entry) {
+            long timestamp = entry.getTimestamp();
+            if (timestamp == EntryIndex.UNKNOWN_TIMESTAMP) {
+                return false;
+            }
+            if (!timeOfDay) {
+                return timestamp >= from && timestamp <= to;
+            }
+            long time = Math.floorMod(timestamp, MILLIS_PER_DAY);
+            return (from <= to) ? time >= from && time <= to : time >= from || time <= to;
+        }
+
+        @Override
+        int cost() {
+            return COST_INDEX;
+        }
+
+        @Override
+        public String toString() {
+            return "time:[" + from + " TO " + to + "]";
+        }
+    }
+
+    /**
+     * Finds the entries that do not match a query
+     */
+    static class Not extends Query {
+        private final Query query;
+
+        Not(Query query) {
+            this.query = query;
+        }
+
+        @Override
+        public boolean matches(EntryText entry) {
+            return !query.matches(entry);
+        }
+
+        @Override
+        int cost() {
+            return query.cost();
+        }
+
+        @Override
+        boolean needsFields() {
+            return query.needsFields();
+        }
+
+        @Override
+        boolean narrows(Query wider) {
+            if (wider instanceof Not) {
+                return ((Not) wider).query.narrows(query);
+            }
+            return super.narrows(wider);
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + query;
+        }
+    }
+
+    /**
+     * Finds the entries matching every query, or any query. The children are kept cheapest first.
+     */
+    static class Combination extends Query {
+        private final Query[] queries;
+        private final boolean matchAll;
+        private final int cost;
+
+        Combination(List<Query> queries, boolean matchAll) {
+            this.queries = queries.toArray(new Query[0]);
+            Arrays.sort(this.queries, Comparator.comparingInt(Query::cost));
+            this.matchAll = matchAll;
+            int sum = 0;
+            for (Query query : queries) {
+                sum += query.cost();
+            }
+            this.cost = sum;
+        }
+
+        @Override
+        boolean needsFields() {
+            for (Query query : queries) {
+                if (query.needsFields()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean matches(EntryText entry) {
+            for (Query query : queries) {
+                if (query.matches(entry) != matchAll) {
+                    return !matchAll;
+                }
+            }
+            return matchAll;
+        }
+
+        @Override
+        int cost() {
+            return cost;
+        }
+
+        @Override
+        int[] candidates(TokenIndex tokens) {
+            int[] result = null;
+            for (Query query : queries) {
+                int[] ids = query.candidates(tokens);
+                if (ids == null) {
+                    if (!matchAll) {
+                        // Any entry may match this child, so any entry may match the whole
+                        return null;
+                    }
+                } else if (result == null) {
+                    result = ids;
+                } else {
+                    result = matchAll ? TokenIndex.intersect(result, ids) : TokenIndex.union(result, ids);
+                }
+                if (matchAll && result != null && result.length == 0) {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        boolean isExact() {
+            for (Query query : queries) {
+                if (!query.isExact()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean narrows(Query wider) {
+            // An AND narrows what any of its children narrows, an OR what all of them narrow
+            for (Query query : queries) {
+                if (query.narrows(wider) == matchAll) {
+                    return matchAll || super.narrows(wider);
+                }
+            }
+            return !matchAll || super.narrows(wider);
+        }
+
+        @Override
+        public String toString() {
+            List<String> parts = new ArrayList<>();
+            for (Query query : queries) {
+                parts.add(query.toString());
+            }
+            return "(" + String.join(matchAll ? " AND " : " OR ", parts) + ")";
+        }
+    }
+}
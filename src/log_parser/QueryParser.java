@@ -0,0 +1,375 @@
+package log_parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiles the text typed into the search box into a Query.
+ *
+ * Syntax, from loosest to tightest binding:
+ * <pre>
+ * a OR b             either query
+ * a AND b, a b       both queries, AND may be left out
+ * NOT a              the entries not matching a
+ * ( a )              grouping
+ * "some text"        a phrase, \" and \\ are escaped with a backslash
+ * /regex/            a regular expression ending a word, \/ is escaped with a backslash
+ * type:ERROR         the type of the entry
+ * logger:com.tririga.XSS    the logger or any logger below it
+ * ip:10.254.81.213   a field named in FieldTemplates.txt, such as ip, account or mid
+ * time:[09:00 TO 10:00]     a time of day on any date, or dates such as
+ * time:[2016-05-24 09:00 TO 2016-05-24 10:00], * leaves a side open
+ * AND(a,b) OR(a,b)   the comma separated keywords of the original search box
+ * </pre>
+ * Words that follow each other without an operator in between are searched for as one piece of text,
+ * the way the search box always treated them. Operators are only recognized in upper case and every
+ * match ignores case.
+ */
+public class QueryParser {
+
+    private static final Pattern TIME_OF_DAY = Pattern.compile("\\d{1,2}:\\d{2}(:\\d{2}([,.]\\d{3})?)?");
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}([ T]\\d{2}:\\d{2}(:\\d{2}([,.]\\d{3})?)?)?");
+
+    private final String text;
+    private int position = 0;
+
+    private QueryParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @param text a query
+     * @return the compiled @param text
+     * @throws IllegalArgumentException if @param text is not a valid query
+     */
+    public static Query parse(String text) {
+        QueryParser parser = new QueryParser(text);
+        Query query = parser.parseOr();
+        parser.skipSpaces();
+        if (parser.position < text.length()) {
+            throw parser.error("Unexpected '" + text.charAt(parser.position) + "'");
+        }
+        return query;
+    }
+
+    private Query parseOr() {
+        List<Query> queries = new ArrayList<>();
+        queries.add(parseAnd());
+        while (acceptOperator("OR")) {
+            queries.add(parseAnd());
+        }
+        return (queries.size() == 1) ? queries.get(0) : new Query.Combination(queries, false);
+    }
+
+    private Query parseAnd() {
+        List<Query> queries = new ArrayList<>();
+        queries.add(parseNot());
+        while (true) {
+            if (acceptOperator("AND")) {
+                queries.add(parseNot());
+            } else if (startsQuery()) {
+                queries.add(parseNot());
+            } else {
+                break;
+            }
+        }
+        return (queries.size() == 1) ? queries.get(0) : new Query.Combination(queries, true);
+    }
+
+    private Query parseNot() {
+        if (acceptOperator("NOT")) {
+            return new Query.Not(parseNot());
+        }
+        return parsePrimary();
+    }
+
+    private Query parsePrimary() {
+        skipSpaces();
+        if (position >= text.length()) {
+            throw error("Missing search term");
+        }
+        char c = text.charAt(position);
+        if (c == '(') {
+            position++;
+            Query query = parseOr();
+            expect(')');
+            return query;
+        } else if (c == '"') {
+            return new Query.Contains(readQuoted('"'));
+        } else if (isRegexAt(position)) {
+            String regex = readQuoted('/');
+            try {
+                return new Query.Regex(Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+            } catch (PatternSyntaxException e) {
+                throw error("Invalid regular expression " + e.getDescription());
+            }
+        } else if (text.startsWith("AND(", position)) {
+            return parseLegacy("AND(", true);
+        } else if (text.startsWith("OR(", position)) {
+            return parseLegacy("OR(", false);
+        } else if (text.startsWith("type:", position)) {
+            position += "type:".length();
+            return new Query.TypeIs(readValue());
+        } else if (text.startsWith("logger:", position)) {
+            position += "logger:".length();
+            return new Query.LoggerIs(readValue());
+        } else if (fieldAt(position) != null) {
+            String field = fieldAt(position);
+            position += field.length() + 1;
+            return new Query.FieldIs(field, readValue());
+        } else if (text.startsWith("time:", position)) {
+            position += "time:".length();
+            return parseTime();
+        } else if (isOperatorAt(position)) {
+            throw error("Missing search term before " + readWord());
+        }
+
+        // A run of plain words is one piece of text, spaces included
+        int start = position;
+        int end = position;
+        while (startsWord()) {
+            readWord();
+            end = position;
+            skipSpaces();
+        }
+        position = end;
+        return new Query.Contains(text.substring(start, end));
+    }
+
+    /**
+     * Parses the original AND(a,b,c) and OR(a,b,c) syntax, whose keywords are taken exactly as typed
+     */
+    private Query parseLegacy(String operator, boolean matchAll) {
+        position += operator.length();
+        int end = text.indexOf(')', position);
+        if (end == -1) {
+            throw error("Missing ')'");
+        }
+        List<Query> queries = new ArrayList<>();
+        for (String keyword : text.substring(position, end).split(",")) {
+            queries.add(new Query.Contains(keyword));
+        }
+        position = end + 1;
+        return (queries.size() == 1) ? queries.get(0) : new Query.Combination(queries, matchAll);
+    }
+
+    /**
+     * Parses the [from TO to] range of a time: predicate
+     */
+    private Query parseTime() {
+        expect('[');
+        int end = text.indexOf(']', position);
+        if (end == -1) {
+            throw error("Missing ']'");
+        }
+        String[] bounds = text.substring(position, end).trim().split("\\s+TO\\s+");
+        if (bounds.length != 2) {
+            throw error("A time range is written as [from TO to]");
+        }
+        position = end + 1;
+
+        boolean fromTime = isTimeOfDay(bounds[0]);
+        boolean toTime = isTimeOfDay(bounds[1]);
+        boolean timeOfDay = (fromTime || toTime) || (bounds[0].equals("*") && bounds[1].equals("*"));
+        if (timeOfDay) {
+            return new Query.TimeRange(parseBound(bounds[0], true, false), parseBound(bounds[1], true, true), true);
+        }
+        return new Query.TimeRange(parseBound(bounds[0], false, false), parseBound(bounds[1], false, true), false);
+    }
+
+    private static boolean isTimeOfDay(String bound) {
+        return TIME_OF_DAY.matcher(bound).matches();
+    }
+
+    /**
+     * @param bound     one side of a time range
+     * @param timeOfDay true if the range holds times of day, false if it holds dates
+     * @param upper     true for the end of the range, which includes the whole last day, minute or second
+     * @return @param bound in milliseconds since midnight or since the epoch
+     */
+    private long parseBound(String bound, boolean timeOfDay, boolean upper) {
+        if (bound.equals("*")) {
+            if (timeOfDay) {
+                return upper ? Query.TimeRange.MILLIS_PER_DAY - 1 : 0;
+            }
+            return upper ? Long.MAX_VALUE : Long.MIN_VALUE + 1;
+        }
+        String date;
+        if (timeOfDay) {
+            if (!isTimeOfDay(bound)) {
+                throw error("Expected a time such as 09:00, found " + bound);
+            }
+            date = "1970-01-01 " + ((bound.indexOf(':') == 1) ? "0" + bound : bound);
+        } else {
+            if (!DATE.matcher(bound).matches()) {
+                throw error("Expected a date such as 2016-05-24 09:00, found " + bound);
+            }
+            date = bound;
+        }
+        byte[] bytes = date.getBytes(StandardCharsets.US_ASCII);
+        long millis = Entry.parseTimestamp(bytes, 0, bytes.length);
+        if (millis == EntryIndex.UNKNOWN_TIMESTAMP) {
+            throw error("Invalid date " + bound);
+        }
+        if (upper) {
+            // Round the end up to the last millisecond it names
+            switch (date.length()) {
+                case 10:
+                    millis += Query.TimeRange.MILLIS_PER_DAY - 1;
+                    break;
+                case 16:
+                    millis += 60 * 1000 - 1;
+                    break;
+                case 19:
+                    millis += 1000 - 1;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return millis;
+    }
+
+    /**
+     * Reads the value of a field predicate, a quoted phrase or a single word
+     */
+    private String readValue() {
+        if (position < text.length() && text.charAt(position) == '"') {
+            return readQuoted('"');
+        }
+        if (!startsWord()) {
+            throw error("Missing value");
+        }
+        return readWord();
+    }
+
+    /**
+     * Reads text enclosed in @param quote, the character at the current position
+     */
+    private String readQuoted(char quote) {
+        StringBuilder sb = new StringBuilder();
+        int start = position++;
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == quote) {
+                return sb.toString();
+            }
+            if (c == '\\' && position < text.length()
+                    && (text.charAt(position) == quote || (quote == '"' && text.charAt(position) == '\\'))) {
+                c = text.charAt(position++);
+            } else if (c == '\\' && quote == '/' && position < text.length()) {
+                // Keep the escapes of a regular expression for Pattern
+                sb.append(c);
+                c = text.charAt(position++);
+            }
+            sb.append(c);
+        }
+        position = start;
+        throw error("Missing closing " + quote);
+    }
+
+    /**
+     * A slash only starts a regular expression if its closing slash ends a word, so paths such as
+     * /html/en/default/admin are still plain words
+     */
+    private boolean isRegexAt(int at) {
+        if (at >= text.length() || text.charAt(at) != '/') {
+            return false;
+        }
+        for (int i = at + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '/') {
+                return i > at + 1 && (i + 1 == text.length() || Character.isWhitespace(text.charAt(i + 1))
+                        || text.charAt(i + 1) == ')');
+            }
+        }
+        return false;
+    }
+
+    private String readWord() {
+        int start = position;
+        while (position < text.length() && !isSeparator(text.charAt(position))) {
+            position++;
+        }
+        return text.substring(start, position);
+    }
+
+    private static boolean isSeparator(char c) {
+        return Character.isWhitespace(c) || c == '(' || c == ')' || c == '"';
+    }
+
+    /**
+     * @return true if a plain word that is not an operator or a predicate starts at the current position
+     */
+    private boolean startsWord() {
+        if (position >= text.length() || isSeparator(text.charAt(position)) || isRegexAt(position)) {
+            return false;
+        }
+        return !isOperatorAt(position) && !text.startsWith("AND(", position) && !text.startsWith("OR(", position)
+                && !text.startsWith("type:", position) && !text.startsWith("logger:", position)
+                && !text.startsWith("time:", position) && fieldAt(position) == null;
+    }
+
+    /**
+     * @return the name of the field whose predicate, such as ip:, starts at @param position, or null
+     */
+    private String fieldAt(int position) {
+        for (String field : FieldExtractor.getAllNames()) {
+            if (text.startsWith(field, position) && text.startsWith(":", position + field.length())) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if another query follows without an operator, making it part of an implicit AND
+     */
+    private boolean startsQuery() {
+        skipSpaces();
+        return position < text.length() && text.charAt(position) != ')' && !isOperatorAt(position);
+    }
+
+    private boolean isOperatorAt(int at) {
+        for (String operator : new String[]{"AND", "OR", "NOT"}) {
+            int end = at + operator.length();
+            if (text.startsWith(operator, at) && (end == text.length() || Character.isWhitespace(text.charAt(end))
+                    || (text.charAt(end) == '(' && operator.equals("NOT")))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean acceptOperator(String operator) {
+        skipSpaces();
+        if (text.startsWith(operator, position) && isOperatorAt(position)) {
+            position += operator.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        skipSpaces();
+        if (position >= text.length() || text.charAt(position) != c) {
+            throw error("Missing '" + c + "'");
+        }
+        position++;
+    }
+
+    private void skipSpaces() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + (position + 1));
+    }
+}
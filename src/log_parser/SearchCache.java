@@ -0,0 +1,209 @@
+package log_parser;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The results of the last searches of a log, as arrays of entry ids in file order, so that typing a search
+ * one character at a time does not scan the whole log for every character.
+ *
+ * A query that was searched before is answered from its result, after searching only the entries added
+ * since. A query that narrows a query searched before, see Query.narrows, only scans the entries the
+ * smallest such result holds. Any other query is looked up in the token index, if there is one, or
+ * scanned with ParallelSearch. The least recently used results are dropped once more than MAX_RESULTS
+ * are kept.
+ *
+ * Searches hand their matches to a ParallelSearch.Listener a slice at a time and can be stopped by it.
+ * The cache is only locked to look up and store results, not while entries are scanned, so a search
+ * running in the background never holds up the thread that started it.
+ */
+public class SearchCache {
+
+    /**
+     * Number of results kept
+     */
+    static final int MAX_RESULTS = 8;
+
+    private final Map<String, Result> results = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+            return size() > MAX_RESULTS;
+        }
+    };
+
+    /**
+     * Counts the calls to forget and clear, results found before one of them are not stored
+     */
+    private int generation = 0;
+
+    /**
+     * Finds the entries matching a query among the first entries of a log
+     *
+     * @param index    the index holding the entries
+     * @param tokens   the token index of the entries, or null
+     * @param count    the number of entries to search
+     * @param query    the query to evaluate
+     * @param listener receives the matches as they are found, in file order
+     * @return the ids of the matching entries below @param count in file order, or null if @param listener
+     * stopped the search
+     */
+    public int[] search(EntryIndex index, TokenIndex tokens, int count, Query query,
+                        ParallelSearch.Listener listener) {
+        String key = query.toString();
+        int started;
+        Result cached;
+        Result wider = null;
+        synchronized (this) {
+            started = generation;
+            cached = results.get(key);
+            // The smallest result of a query this one narrows holds every entry it can match
+            if (cached == null) {
+                for (Result result : results.values()) {
+                    if (query.narrows(result.query) && (wider == null || result.ids.length < wider.ids.length)) {
+                        wider = result;
+                    }
+                }
+            }
+        }
+
+        Matches matches = new Matches(listener);
+        boolean finished;
+        if (cached != null) {
+            finished = matches.matchesFound(below(cached.ids, count))
+                    && ParallelSearch.search(index, range(cached.count, count), Math.max(0, count - cached.count),
+                    query, matches);
+        } else {
+            int[] candidates = (tokens != null) ? query.candidates(tokens) : null;
+            if (candidates != null) {
+                candidates = below(candidates, count);
+            }
+            if (candidates != null && query.isExact()) {
+                finished = matches.matchesFound(candidates);
+            } else if (candidates == null && wider == null) {
+                finished = ParallelSearch.search(index, null, count, query, matches);
+            } else {
+                if (wider != null) {
+                    wider = extend(index, wider, count, started);
+                    candidates = (candidates == null) ? wider.ids : TokenIndex.intersect(candidates, wider.ids);
+                }
+                finished = ParallelSearch.search(index, candidates, candidates.length, query, matches);
+            }
+        }
+        if (!finished) {
+            return null;
+        }
+
+        int[] ids = matches.toArray();
+        store(key, new Result(query, ids, count), started);
+        return ids;
+    }
+
+    /**
+     * Forgets which of the entries from an id on matched, after the entry with that id grew
+     *
+     * @param firstId the first id to search again
+     */
+    public synchronized void forget(int firstId) {
+        generation++;
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            Result result = entry.getValue();
+            if (result.count > firstId) {
+                entry.setValue(new Result(result.query, below(result.ids, firstId), firstId));
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        results.clear();
+    }
+
+    /**
+     * Keeps a result, unless the cache was changed since the search that found it started
+     */
+    private synchronized void store(String key, Result result, int started) {
+        if (generation == started) {
+            results.put(key, result);
+        }
+    }
+
+    /**
+     * Searches the entries added since a result was found
+     *
+     * @return @param result with the matches among the first @param count entries
+     */
+    private Result extend(EntryIndex index, Result result, int count, int started) {
+        if (result.count >= count) {
+            return result;
+        }
+        int[] matches = ParallelSearch.search(index, range(result.count, count), count - result.count, result.query);
+        int[] ids = Arrays.copyOf(result.ids, result.ids.length + matches.length);
+        System.arraycopy(matches, 0, ids, result.ids.length, matches.length);
+        Result extended = new Result(result.query, ids, count);
+        store(result.query.toString(), extended, started);
+        return extended;
+    }
+
+    /**
+     * @return the ids from @param from up to @param to
+     */
+    private static int[] range(int from, int to) {
+        int[] ids = new int[Math.max(0, to - from)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = from + i;
+        }
+        return ids;
+    }
+
+    /**
+     * @return the ids of @param ids below @param count, which are ascending
+     */
+    private static int[] below(int[] ids, int count) {
+        int end = Arrays.binarySearch(ids, count);
+        end = (end < 0) ? -end - 1 : end;
+        return (end == ids.length) ? ids : Arrays.copyOf(ids, end);
+    }
+
+    /**
+     * The ids of the entries below count that match a query
+     */
+    private static class Result {
+        final Query query;
+        final int[] ids;
+        final int count;
+
+        Result(Query query, int[] ids, int count) {
+            this.query = query;
+            this.ids = ids;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Collects the matches of a search while passing them on
+     */
+    private static class Matches implements ParallelSearch.Listener {
+        private final ParallelSearch.Listener listener;
+        private int[] ids = new int[1024];
+        private int count = 0;
+
+        Matches(ParallelSearch.Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean matchesFound(int[] matches) {
+            if (count + matches.length > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(ids.length * 2, count + matches.length));
+            }
+            System.arraycopy(matches, 0, ids, count, matches.length);
+            count += matches.length;
+            return listener.matchesFound(matches);
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, count);
+        }
+    }
+}
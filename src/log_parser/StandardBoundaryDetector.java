@@ -0,0 +1,106 @@
+package log_parser;
+
+/**
+ * The entry start formats the parser knows about. Each one scans the bytes of a line by hand instead of
+ * running a regular expression, since the check runs for every line of a file.
+ */
+public enum StandardBoundaryDetector implements EntryBoundaryDetector {
+
+    /**
+     * A date such as "2016-05-24" in the first 10 characters, the format of TRIRIGA server logs.
+     * Accepts exactly what the pattern "([0-9]+-+[0-9]+-+[0-9]+)+" accepted on those 10 characters.
+     */
+    DATE {
+        @Override
+        public boolean isEntryStart(byte[] line, int length) {
+            if (length < 10) {
+                return false;
+            }
+            // Runs of digits separated by runs of dashes, starting and ending with digits. The pattern repeats
+            // in groups of three digit runs, so a run shared by two groups needs at least one digit for each.
+            int run = -1;
+            int runLength = 0;
+            boolean inDigits = false;
+            for (int i = 0; i < 10; i++) {
+                byte b = line[i];
+                if (b >= '0' && b <= '9') {
+                    if (!inDigits) {
+                        run++;
+                        runLength = 0;
+                        inDigits = true;
+                    }
+                    runLength++;
+                } else if (b == '-' && run >= 0) {
+                    if (inDigits && run > 0 && run % 2 == 0 && runLength < 2) {
+                        return false;
+                    }
+                    inDigits = false;
+                } else {
+                    return false;
+                }
+            }
+            return inDigits && run >= 2 && run % 2 == 0;
+        }
+    },
+
+    /**
+     * An ISO-8601 date and time such as "2016-05-24T09:00", as written by most Java logging frameworks
+     * configured for ISO output
+     */
+    ISO_8601 {
+        @Override
+        public boolean isEntryStart(byte[] line, int length) {
+            return length >= 16
+                    && isDigits(line, 0, 4) && line[4] == '-' && isDigits(line, 5, 2) && line[7] == '-'
+                    && isDigits(line, 8, 2) && line[10] == 'T'
+                    && isDigits(line, 11, 2) && line[13] == ':' && isDigits(line, 14, 2);
+        }
+    },
+
+    /**
+     * A syslog (RFC 3164) time stamp such as "May 24 09:00:05" or "May  4 09:00:05"
+     */
+    SYSLOG {
+        @Override
+        public boolean isEntryStart(byte[] line, int length) {
+            return length >= 15 && isMonth(line)
+                    && line[3] == ' ' && (line[4] == ' ' || isDigits(line, 4, 1)) && isDigits(line, 5, 1)
+                    && line[6] == ' ' && isDigits(line, 7, 2) && line[9] == ':' && isDigits(line, 10, 2)
+                    && line[12] == ':' && isDigits(line, 13, 2);
+        }
+    },
+
+    /**
+     * Seconds or milliseconds since the epoch, 10 or 13 digits followed by a non digit
+     */
+    EPOCH {
+        @Override
+        public boolean isEntryStart(byte[] line, int length) {
+            int digits = 0;
+            while (digits < length && line[digits] >= '0' && line[digits] <= '9') {
+                digits++;
+            }
+            return digits == 10 || digits == 13;
+        }
+    };
+
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+
+    private static boolean isDigits(byte[] line, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            if (line[i] < '0' || line[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isMonth(byte[] line) {
+        for (int i = 0; i < MONTHS.length(); i += 3) {
+            if (line[0] == MONTHS.charAt(i) && line[1] == MONTHS.charAt(i + 1) && line[2] == MONTHS.charAt(i + 2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
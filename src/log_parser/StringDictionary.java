@@ -0,0 +1,88 @@
+package log_parser;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Numbers the distinct values of a field, or the types of entries, in the order they are first seen, so
+ * columns can store a small int code per entry instead of a String. Each value is kept once however many
+ * entries have it.
+ *
+ * Any thread can add and look up values. Looking up a value or the value of a code never locks, so parser
+ * and search threads can use a dictionary on every entry; only adding a value that is not in the dictionary
+ * yet takes its lock. Codes never change once given out.
+ */
+public class StringDictionary {
+
+    /**
+     * Code of a value that is not in the dictionary
+     */
+    public static final int MISSING = -1;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    /**
+     * Written after the value it makes visible, read before values
+     */
+    private volatile int size = 0;
+
+    /**
+     * Adds a value if it is not in the dictionary yet
+     *
+     * @param value a value of the field, or null
+     * @return the code of @param value, or MISSING if it is null
+     */
+    public int intern(String value) {
+        if (value == null) {
+            return MISSING;
+        }
+        Integer code = codes.get(value);
+        return (code != null) ? code : add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        values = current;
+        size++;
+        codes.put(value, size - 1);
+        return size - 1;
+    }
+
+    /**
+     *
+     * @param value a value of the field, or null
+     * @return the code of @param value, or MISSING if it was never added
+     */
+    public int lookup(String value) {
+        Integer code = (value == null) ? null : codes.get(value);
+        return (code == null) ? MISSING : code;
+    }
+
+    /**
+     *
+     * @param code a code returned by intern
+     * @return the value numbered @param code
+     */
+    public String get(int code) {
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("Code " + code + ", size " + size);
+        }
+        return values[code];
+    }
+
+    /**
+     *
+     * @return the number of distinct values, every code is below it
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,87 @@
+package log_parser;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Finds one keyword in the raw bytes of an entry, ignoring ASCII case, without decoding the entry.
+ *
+ * The keyword is folded to lower case once and searched with Boyer-Moore-Horspool, comparing each
+ * byte of the text through a folding table. Keywords with characters outside ASCII cannot be folded
+ * byte by byte, so those fall back to decoding the entry and comparing its lower cased text.
+ * A matcher holds no state between calls and can be shared by any number of threads.
+ */
+public class SubstringMatcher {
+
+    private static final byte[] FOLD = new byte[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            FOLD[i] = (byte) ((i >= 'A' && i <= 'Z') ? i + ('a' - 'A') : i);
+        }
+    }
+
+    private final String keyword;
+    private final byte[] pattern;
+    private final int[] shift;
+
+    /**
+     * @param keyword the text to look for, in any case
+     * @param charset the encoding of the text that will be searched
+     */
+    public SubstringMatcher(String keyword, Charset charset) {
+        this.keyword = keyword.toLowerCase(Locale.ROOT);
+        if (isAscii(this.keyword)) {
+            pattern = this.keyword.getBytes(charset);
+            shift = new int[256];
+            for (int i = 0; i < 256; i++) {
+                shift[i] = pattern.length;
+            }
+            // Both cases of a letter shift the same way since the text is folded before the lookup
+            for (int i = 0; i < pattern.length - 1; i++) {
+                shift[pattern[i] & 0xFF] = pattern.length - 1 - i;
+            }
+        } else {
+            pattern = null;
+            shift = null;
+        }
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @param text    the bytes of an entry
+     * @param length  the number of valid bytes in @param text
+     * @param charset the encoding of @param text
+     * @return true if the keyword occurs in @param text
+     */
+    public boolean matches(byte[] text, int length, Charset charset) {
+        if (pattern == null) {
+            return new String(text, 0, length, charset).toLowerCase(Locale.ROOT).contains(keyword);
+        }
+        int last = pattern.length - 1;
+        if (last < 0) {
+            return true;
+        }
+        int i = 0;
+        while (i + last < length) {
+            int j = last;
+            while (FOLD[text[i + j] & 0xFF] == pattern[j]) {
+                if (j == 0) {
+                    return true;
+                }
+                j--;
+            }
+            i += shift[FOLD[text[i + last] & 0xFF] & 0xFF];
+        }
+        return false;
+    }
+}
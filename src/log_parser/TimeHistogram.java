@@ -0,0 +1,205 @@
+package log_parser;
+
+import java.util.Arrays;
+
+/**
+ * Entry counts per time bucket and type, kept at several bucket widths at once so an overview of any
+ * range can be drawn without going back to the entries.
+ *
+ * Every entry with a date is counted once in each level while the file is read. A level is dropped once
+ * the dates span more than MAX_BUCKETS of its buckets, so the finest levels only exist for short logs and
+ * the memory used stays bounded. Types are counted in one column per type priority below TYPE_COLUMNS,
+ * rarer types and entries without a type share column 0.
+ */
+public class TimeHistogram {
+
+    /**
+     * Bucket widths of the levels in milliseconds, from the finest to the coarsest
+     */
+    static final long[] WIDTHS = {
+            1000L, 10 * 1000L, 60 * 1000L, 10 * 60 * 1000L, 60 * 60 * 1000L, 6 * 60 * 60 * 1000L, 24 * 60 * 60 * 1000L
+    };
+
+    /**
+     * Number of count columns per bucket, see column
+     */
+    public static final int TYPE_COLUMNS = 16;
+
+    private static final int MAX_BUCKETS = 100000;
+
+    private final Level[] levels = new Level[WIDTHS.length];
+    private long start = Long.MAX_VALUE;
+    private long end = Long.MIN_VALUE;
+    private long total = 0;
+    private boolean ordered = true;
+
+    public TimeHistogram() {
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = new Level(WIDTHS[i]);
+        }
+    }
+
+    /**
+     *
+     * @param type the type priority stored in the EntryIndex
+     * @return the column entries of @param type are counted in
+     */
+    public static int column(byte type) {
+        return (type >= 0 && type < TYPE_COLUMNS - 1) ? type + 1 : 0;
+    }
+
+    /**
+     * Counts a run of consecutive entries of an index
+     *
+     * @param index   the index holding the entries
+     * @param firstId the id of the first entry to count
+     * @param count   the number of entries to count
+     */
+    public synchronized void add(EntryIndex index, int firstId, int count) {
+        for (int id = firstId; id < firstId + count; id++) {
+            long timestamp = index.getTimestamp(id);
+            if (timestamp == EntryIndex.UNKNOWN_TIMESTAMP) {
+                continue;
+            }
+            int column = column(index.getType(id));
+            for (Level level : levels) {
+                level.add(timestamp, column);
+            }
+            ordered &= timestamp >= end;
+            start = Math.min(start, timestamp);
+            end = Math.max(end, timestamp);
+            total++;
+        }
+    }
+
+    /**
+     *
+     * @return the number of entries with a date that were counted
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     *
+     * @return true if the dates were counted in ascending order, so the EntryIndex can be binary searched by date
+     */
+    public synchronized boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     *
+     * @return the earliest date counted
+     */
+    public synchronized long getStart() {
+        return start;
+    }
+
+    /**
+     *
+     * @return the latest date counted
+     */
+    public synchronized long getEnd() {
+        return end;
+    }
+
+    /**
+     * Picks the finest bucket width that shows a range in at most @param maxBuckets buckets
+     *
+     * @param from       the start of the range
+     * @param to         the end of the range
+     * @param maxBuckets the most buckets wanted
+     * @return a bucket width counts can be read with, or -1 if the dates span too much time for any level
+     */
+    public synchronized long bucketWidth(long from, long to, int maxBuckets) {
+        for (Level level : levels) {
+            if (level.counts != null && (to - from) / level.width < maxBuckets) {
+                return level.width;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the counts of consecutive buckets
+     *
+     * @param width       a width returned by bucketWidth
+     * @param firstBucket the number of the first bucket, a date divided by @param width
+     * @param counts      receives TYPE_COLUMNS counts per bucket, as many buckets as it has room for
+     */
+    public synchronized void counts(long width, long firstBucket, int[] counts) {
+        Arrays.fill(counts, 0);
+        for (Level level : levels) {
+            if (level.width == width && level.counts != null) {
+                level.copy(firstBucket, counts);
+                return;
+            }
+        }
+    }
+
+    /**
+     * The counts of one bucket width, in one array of TYPE_COLUMNS ints per bucket
+     */
+    private static class Level {
+        final long width;
+        int[] counts = new int[64 * TYPE_COLUMNS];
+        long origin;
+        int buckets = 0;
+
+        Level(long width) {
+            this.width = width;
+        }
+
+        void add(long timestamp, int column) {
+            if (counts == null) {
+                return;
+            }
+            long bucket = Math.floorDiv(timestamp, width);
+            if (buckets == 0) {
+                origin = bucket;
+                buckets = 1;
+            } else if (bucket < origin) {
+                // A date earlier than every date so far, the buckets move up to make room
+                int shift = (int) Math.min(origin - bucket, MAX_BUCKETS + 1);
+                if (!ensureBuckets(buckets + shift)) {
+                    return;
+                }
+                System.arraycopy(counts, 0, counts, shift * TYPE_COLUMNS, buckets * TYPE_COLUMNS);
+                Arrays.fill(counts, 0, shift * TYPE_COLUMNS, 0);
+                origin = bucket;
+                buckets += shift;
+            } else if (bucket >= origin + buckets) {
+                if (!ensureBuckets((int) Math.min(bucket - origin + 1, MAX_BUCKETS + 1))) {
+                    return;
+                }
+                buckets = (int) (bucket - origin + 1);
+            }
+            counts[(int) (bucket - origin) * TYPE_COLUMNS + column]++;
+        }
+
+        /**
+         * @return false if the level was dropped because it would need more than MAX_BUCKETS buckets
+         */
+        private boolean ensureBuckets(int needed) {
+            if (needed > MAX_BUCKETS) {
+                counts = null;
+                return false;
+            }
+            if (needed * TYPE_COLUMNS > counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(counts.length * 2, needed * TYPE_COLUMNS));
+            }
+            return true;
+        }
+
+        void copy(long firstBucket, int[] dst) {
+            int wanted = dst.length / TYPE_COLUMNS;
+            for (int i = 0; i < wanted; i++) {
+                long bucket = firstBucket + i - origin;
+                if (bucket >= 0 && bucket < buckets) {
+                    System.arraycopy(counts, (int) bucket * TYPE_COLUMNS, dst, i * TYPE_COLUMNS, TYPE_COLUMNS);
+                }
+            }
+        }
+    }
+}
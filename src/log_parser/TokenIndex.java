@@ -0,0 +1,466 @@
+package log_parser;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An inverted index from the tokens of a log to the entries containing them.
+ *
+ * A token is a run of letters, digits, underscores and non ASCII bytes, compared without regard to
+ * ASCII case. Each token maps to a PostingList of entry ids. Tokens are collected by the parser
+ * threads one Batch at a time and merged in file order, so ids always arrive in ascending order.
+ *
+ * A search term made of token characters only matches an entry exactly when one of the entry's tokens
+ * contains the term, so its ids are read from the postings of the matching tokens. Any other term
+ * can only be narrowed down to candidates, which the caller still has to check against the text.
+ *
+ * The tokens containing a term are found through a trigram index of the vocabulary: only tokens containing
+ * the term's least common trigram are compared with it. Terms shorter than a trigram are compared with
+ * every token, on a snapshot of the vocabulary taken without holding the lock merge() needs, so searching
+ * while a log loads does not hold up its ingestion.
+ */
+public class TokenIndex {
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    /**
+     * The tokens in the order they were first seen, with their posting lists at the same number. Only ever
+     * appended to, so the tokens below a count read under the lock can be read without it.
+     */
+    private String[] tokens = new String[1024];
+    private PostingList[] lists = new PostingList[1024];
+    private volatile int tokenCount = 0;
+    /**
+     * The numbers of the tokens containing each trigram, keyed by its three bytes
+     */
+    private final Map<Integer, PostingList> trigrams = new HashMap<>();
+    private int entryCount = 0;
+    private volatile long buildNanos = 0;
+    /**
+     * The approximate number of bytes the index takes on the heap, kept up to date as tokens are merged so
+     * it can be shown without walking the lists
+     */
+    private volatile long memoryUsage = measure();
+
+    /**
+     * @param b a byte of the file
+     * @return true if @param b can be part of a token
+     */
+    static boolean isTokenByte(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_' || b < 0;
+    }
+
+    /**
+     * @param c a character of a search term
+     * @return true if @param c can be part of a token the index can look up
+     */
+    static boolean isTokenChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Adds the tokens of a batch of consecutive entries. Batches have to be merged in file order.
+     *
+     * @param batch     the tokens collected from the batch
+     * @param firstId   the id of the first entry of the batch
+     * @param buildTime the time spent collecting the batch's tokens, in nanoseconds
+     */
+    public synchronized void merge(Batch batch, int firstId, long buildTime) {
+        long start = System.nanoTime();
+        for (int t = 0; t < batch.tokenCount; t++) {
+            String token = new String(batch.pool, batch.tokenStart[t], batch.tokenLength[t], StandardCharsets.ISO_8859_1);
+            PostingList list = postings.get(token);
+            if (list == null) {
+                list = new PostingList();
+                addToken(token, list);
+            }
+            int[] ids = batch.ids[t];
+            long before = list.memoryUsage();
+            for (int i = 0; i < batch.idCount[t]; i++) {
+                list.add(firstId + ids[i]);
+            }
+            memoryUsage += list.memoryUsage() - before;
+        }
+        entryCount = Math.max(entryCount, firstId + batch.entryCount);
+        buildNanos += buildTime + (System.nanoTime() - start);
+    }
+
+    /**
+     * Adds a token that is not in the index yet, and numbers it in the trigram index
+     */
+    private void addToken(String token, PostingList list) {
+        postings.put(token, list);
+        // HashMap node and table slot, String with its byte array, and the posting list
+        long bytes = 32 + 4 + 40 + token.length() + list.memoryUsage();
+        if (tokenCount == tokens.length) {
+            bytes += 8L * tokenCount;
+            tokens = Arrays.copyOf(tokens, tokenCount * 2);
+            lists = Arrays.copyOf(lists, tokenCount * 2);
+        }
+        tokens[tokenCount] = token;
+        lists[tokenCount] = list;
+        for (int i = 0; i + 3 <= token.length(); i++) {
+            PostingList numbers = trigrams.get(trigram(token, i));
+            if (numbers == null) {
+                numbers = new PostingList();
+                trigrams.put(trigram(token, i), numbers);
+                // HashMap node and table slot, Integer key and the list of token numbers
+                bytes += 32 + 4 + 16 + numbers.memoryUsage();
+            }
+            // A trigram found twice in the token is only added once, the list ignores the repeated number
+            long before = numbers.memoryUsage();
+            numbers.add(tokenCount);
+            bytes += numbers.memoryUsage() - before;
+        }
+        tokenCount++;
+        memoryUsage += bytes;
+    }
+
+    /**
+     * @return the three characters of @param s from @param start on, one byte each
+     */
+    private static int trigram(String s, int start) {
+        return ((s.charAt(start) & 0xff) << 16) | ((s.charAt(start + 1) & 0xff) << 8) | (s.charAt(start + 2) & 0xff);
+    }
+
+    /**
+     * Releases the spare room of every posting list, called once a file has been read
+     */
+    public synchronized void trim() {
+        for (PostingList list : postings.values()) {
+            list.trim();
+        }
+        for (PostingList list : trigrams.values()) {
+            list.trim();
+        }
+        memoryUsage = measure();
+    }
+
+    /**
+     * Writes every token and its posting list, see IndexSidecar
+     */
+    synchronized void write(DataOutputStream out) throws IOException {
+        out.writeInt(postings.size());
+        out.writeInt(entryCount);
+        out.writeLong(buildNanos);
+        for (Map.Entry<String, PostingList> e : postings.entrySet()) {
+            byte[] token = e.getKey().getBytes(StandardCharsets.ISO_8859_1);
+            out.writeInt(token.length);
+            out.write(token);
+            e.getValue().write(out);
+        }
+    }
+
+    /**
+     * Fills an empty index with the tokens written by write
+     *
+     * @param in positioned at the start of the tokens
+     */
+    synchronized void read(ByteBuffer in) {
+        int tokenCount = in.getInt();
+        entryCount = in.getInt();
+        buildNanos = in.getLong();
+        for (int t = 0; t < tokenCount; t++) {
+            byte[] token = new byte[in.getInt()];
+            in.get(token);
+            addToken(new String(token, StandardCharsets.ISO_8859_1), PostingList.read(in));
+        }
+    }
+
+    /**
+     * Checks whether the index can answer a term exactly
+     *
+     * @param term a search term
+     * @return true if every character of @param term is a token character
+     */
+    public static boolean isTokenAligned(String term) {
+        if (term.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < term.length(); i++) {
+            if (!isTokenChar(term.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the entries containing a term that is token aligned
+     *
+     * @param term a search term of token characters only
+     * @return the ids of the entries with a token containing @param term, in ascending order
+     */
+    public int[] find(String term) {
+        // Tokens are folded to lower case as ASCII, whatever the default locale
+        String normalized = term.toLowerCase(Locale.ROOT);
+        String[] vocabulary;
+        int[] numbers = null;
+        int count;
+        synchronized (this) {
+            vocabulary = tokens;
+            count = tokenCount;
+            if (normalized.length() >= 3) {
+                PostingList rarest = null;
+                for (int i = 0; i + 3 <= normalized.length(); i++) {
+                    PostingList list = trigrams.get(trigram(normalized, i));
+                    if (list == null) {
+                        return new int[0];
+                    }
+                    if (rarest == null || list.size() < rarest.size()) {
+                        rarest = list;
+                    }
+                }
+                numbers = rarest.toArray();
+                count = numbers.length;
+            }
+        }
+
+        // Compared without the lock, tokens below the count read under it never change
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int number = (numbers == null) ? i : numbers[i];
+            if (vocabulary[number].contains(normalized)) {
+                matches.add(number);
+            }
+        }
+        synchronized (this) {
+            if (matches.size() == 1) {
+                return lists[matches.get(0)].toArray();
+            }
+            int[][] arrays = new int[matches.size()][];
+            for (int i = 0; i < arrays.length; i++) {
+                arrays[i] = lists[matches.get(i)].toArray();
+            }
+            return union(arrays);
+        }
+    }
+
+    /**
+     * Narrows down the entries that can contain any term. Every token character run of the term has to
+     * appear inside a token of a matching entry.
+     *
+     * @param term a search term
+     * @return the ids of the entries that may contain @param term in ascending order, or null if the term
+     * has no token characters and every entry is a candidate
+     */
+    public int[] candidates(String term) {
+        int[] result = null;
+        int start = -1;
+        for (int i = 0; i <= term.length(); i++) {
+            boolean tokenChar = i < term.length() && isTokenChar(term.charAt(i));
+            if (tokenChar && start == -1) {
+                start = i;
+            } else if (!tokenChar && start != -1) {
+                int[] ids = find(term.substring(start, i));
+                result = (result == null) ? ids : intersect(result, ids);
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the ids found in both arrays, both have to be in ascending order
+     */
+    public static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @return the ids found in any of the arrays, in ascending order
+     */
+    public static int[] union(int[]... arrays) {
+        BitSet bits = new BitSet();
+        for (int[] ids : arrays) {
+            for (int id : ids) {
+                bits.set(id);
+            }
+        }
+        return bits.stream().toArray();
+    }
+
+    /**
+     *
+     * @return the number of distinct tokens
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     *
+     * @return the approximate number of bytes the index takes on the heap
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Adds up the sizes of every list, which is only done when the size of all of them has changed
+     */
+    private long measure() {
+        long bytes = 48;
+        for (Map.Entry<String, PostingList> e : postings.entrySet()) {
+            // HashMap node, String with its byte array, and the posting list
+            bytes += 32 + 40 + e.getKey().length() + e.getValue().memoryUsage();
+        }
+        for (PostingList list : trigrams.values()) {
+            // HashMap node, Integer key and the list of token numbers
+            bytes += 32 + 16 + list.memoryUsage();
+        }
+        return bytes + 4L * postings.size() + 8L * tokens.length + 4L * trigrams.size();
+    }
+
+    /**
+     *
+     * @return the total time spent building the index, in milliseconds
+     */
+    public long getBuildMillis() {
+        return buildNanos / 1000000;
+    }
+
+    /**
+     * The tokens of a run of consecutive entries, collected on one parser thread without creating a String
+     * per token. Token bytes are lower cased into one shared pool and looked up through an open addressing
+     * hash table.
+     */
+    public static class Batch {
+        private byte[] pool = new byte[64 * 1024];
+        private int poolLength = 0;
+        private int[] table = new int[4096];
+        private int[] tokenStart = new int[2048];
+        private int[] tokenLength = new int[2048];
+        private int[] tokenHash = new int[2048];
+        private int[][] ids = new int[2048][];
+        private int[] idCount = new int[2048];
+        private int tokenCount = 0;
+        private int entryCount = 0;
+
+        public Batch() {
+            Arrays.fill(table, -1);
+        }
+
+        /**
+         * Collects the tokens of the next entry of the batch
+         *
+         * @param text   the bytes of the entry
+         * @param length the number of valid bytes in @param text
+         */
+        public void addEntry(byte[] text, int length) {
+            int entry = entryCount++;
+            int i = 0;
+            while (i < length) {
+                while (i < length && !isTokenByte(text[i])) {
+                    i++;
+                }
+                int start = i;
+                int hash = 0;
+                while (i < length && isTokenByte(text[i])) {
+                    hash = 31 * hash + lower(text[i]);
+                    i++;
+                }
+                if (i > start) {
+                    addToken(text, start, i - start, hash, entry);
+                }
+            }
+        }
+
+        private static byte lower(byte b) {
+            return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+        }
+
+        private void addToken(byte[] text, int start, int length, int hash, int entry) {
+            int mask = table.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (table[slot] != -1) {
+                int t = table[slot];
+                if (tokenHash[t] == hash && equalsToken(t, text, start, length)) {
+                    if (ids[t][idCount[t] - 1] != entry) {
+                        if (idCount[t] == ids[t].length) {
+                            ids[t] = Arrays.copyOf(ids[t], ids[t].length * 2);
+                        }
+                        ids[t][idCount[t]++] = entry;
+                    }
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            // A token not seen before in this batch
+            int t = tokenCount++;
+            if (t == tokenStart.length) {
+                int capacity = t * 2;
+                tokenStart = Arrays.copyOf(tokenStart, capacity);
+                tokenLength = Arrays.copyOf(tokenLength, capacity);
+                tokenHash = Arrays.copyOf(tokenHash, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                idCount = Arrays.copyOf(idCount, capacity);
+            }
+            if (poolLength + length > pool.length) {
+                pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolLength + length));
+            }
+            for (int i = 0; i < length; i++) {
+                pool[poolLength + i] = lower(text[start + i]);
+            }
+            tokenStart[t] = poolLength;
+            tokenLength[t] = length;
+            tokenHash[t] = hash;
+            poolLength += length;
+            ids[t] = new int[]{entry, 0};
+            idCount[t] = 1;
+            table[slot] = t;
+
+            if (tokenCount * 2 > table.length) {
+                rehash();
+            }
+        }
+
+        private boolean equalsToken(int t, byte[] text, int start, int length) {
+            if (tokenLength[t] != length) {
+                return false;
+            }
+            int offset = tokenStart[t];
+            for (int i = 0; i < length; i++) {
+                if (pool[offset + i] != lower(text[start + i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            Arrays.fill(table, -1);
+            int mask = table.length - 1;
+            for (int t = 0; t < tokenCount; t++) {
+                int slot = (tokenHash[t] ^ (tokenHash[t] >>> 16)) & mask;
+                while (table[slot] != -1) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = t;
+            }
+        }
+    }
+}
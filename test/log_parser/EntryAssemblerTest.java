@@ -0,0 +1,202 @@
+package log_parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Checks that splitting a file in ranges finds the same entries as splitting it from start to end. The
+ * file has multi-line entries, stack traces, blank lines, lines before the first entry and a last line
+ * without a line break, so range borders fall on entry starts, inside entries and inside lines.
+ *
+ * The entries of each range are split with EntryAssembler in range mode and put together in file order,
+ * for range sizes down to a single byte. The file is then loaded by a LogLoader with small ranges, which
+ * stitches the ranges of its reader threads, and by one that reads the file as a single range.
+ *
+ * Runs without a test framework, with the compiled sources and their resources on the class path:
+ * <pre>
+ * java -ea -cp bin:test-bin log_parser.EntryAssemblerTest
+ * </pre>
+ */
+public class EntryAssemblerTest {
+
+    private static final EntryBoundaryDetector DETECTOR = StandardBoundaryDetector.DATE;
+
+    public static void main(String[] args) throws Exception {
+        File file = File.createTempFile("EntryAssemblerTest", ".log");
+        file.deleteOnExit();
+        Files.write(file.toPath(), sampleLog(new Random(20160524), 400).getBytes(StandardCharsets.UTF_8));
+
+        long[][] expected = splitWhole(file);
+        check(expected[0].length > 400, "Only " + expected[0].length + " entries were split");
+        for (long rangeSize : new long[]{1, 2, 3, 7, 64, 100, 1000, 4096, file.length()}) {
+            long[][] found = splitRanges(file, rangeSize);
+            compare(expected, found, "ranges of " + rangeSize + " bytes");
+        }
+
+        long[][] single = load(file, file.length());
+        compare(expected, single, "a load of a single range");
+        for (long rangeSize : new long[]{1, 13, 512, 2048}) {
+            compare(single, load(file, rangeSize), "a load in ranges of " + rangeSize + " bytes");
+        }
+        System.out.println("EntryAssemblerTest passed, " + expected[0].length + " entries in " + file.length()
+                + " bytes");
+    }
+
+    /**
+     * @return a log of @param entries entries, some of them with stack traces
+     */
+    private static String sampleLog(Random random, int entries) {
+        String[] types = {"INFO ", "WARN ", "ERROR", "DEBUG"};
+        StringBuilder log = new StringBuilder();
+        log.append("Log started\n\n");
+        for (int i = 0; i < entries; i++) {
+            log.append(String.format("2016-05-24 07:%02d:%02d,%03d %s [com.tririga.Test%d] Message %d",
+                    i / 60 % 60, i % 60, random.nextInt(1000), types[random.nextInt(types.length)],
+                    random.nextInt(5), i));
+            for (int words = random.nextInt(20); words > 0; words--) {
+                log.append(" word").append(random.nextInt(100000));
+            }
+            log.append('\n');
+            if (random.nextInt(4) == 0) {
+                log.append("java.lang.IllegalStateException: failed ").append(i).append('\n');
+                for (int frames = random.nextInt(8); frames > 0; frames--) {
+                    log.append("\tat com.tririga.Test.method").append(random.nextInt(50)).append("(Test.java:")
+                            .append(random.nextInt(900)).append(")\n");
+                }
+            }
+            if (random.nextInt(10) == 0) {
+                log.append('\n');
+            }
+        }
+        // The last line of a file that is still being written has no line break
+        log.append("2016-05-24 08:00:00,000 INFO  [com.tririga.Test] Last entry");
+        return log.toString();
+    }
+
+    /**
+     * @return the offsets and lengths of the entries of @param file, split from start to end
+     */
+    private static long[][] splitWhole(File file) throws IOException {
+        Entries entries = new Entries();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            EntryAssembler assembler = new EntryAssembler(raf.getChannel(), 0, DETECTOR);
+            while (assembler.next()) {
+                entries.add(assembler.getOffset(), assembler.getLength());
+            }
+        }
+        return entries.toArrays();
+    }
+
+    /**
+     * @return the offsets and lengths of the entries of @param file, split range by range the way the
+     * readers of a LogLoader split them
+     */
+    private static long[][] splitRanges(File file, long rangeSize) throws IOException {
+        Entries entries = new Entries();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            for (long from = 0; from < file.length(); from += rangeSize) {
+                long to = Math.min(from + rangeSize, file.length());
+                EntryAssembler assembler;
+                if (from == 0) {
+                    raf.getChannel().position(0);
+                    assembler = new EntryAssembler(raf.getChannel(), 0, to, false, DETECTOR);
+                } else {
+                    raf.getChannel().position(from - 1);
+                    assembler = new EntryAssembler(raf.getChannel(), from, to, true, DETECTOR);
+                }
+                while (assembler.next()) {
+                    entries.add(assembler.getOffset(), assembler.getLength());
+                }
+            }
+        }
+        return entries.toArrays();
+    }
+
+    /**
+     * @return the offsets and lengths of the entries a LogLoader adds to its index
+     */
+    private static long[][] load(File file, long rangeSize) throws Exception {
+        EntryIndex index = new EntryIndex();
+        CountDownLatch done = new CountDownLatch(1);
+        Exception[] failure = new Exception[1];
+        LogLoader loader = new LogLoader(file, index, DETECTOR, null, new LogLoader.Listener() {
+            public void entriesParsed(int firstId, int count) {
+            }
+
+            public void progressChanged(long bytesRead, long totalBytes) {
+            }
+
+            public void loadingFinished(boolean cancelled) {
+                done.countDown();
+            }
+
+            public void loadingFailed(Exception ex) {
+                failure[0] = ex;
+                done.countDown();
+            }
+        });
+        loader.setRangeSize(rangeSize);
+        loader.start();
+        done.await();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        Entries entries = new Entries();
+        for (int id = 0; id < index.size(); id++) {
+            entries.add(index.getOffset(id), index.getLength(id));
+        }
+        return entries.toArrays();
+    }
+
+    private static void compare(long[][] expected, long[][] found, String how) {
+        check(Arrays.equals(expected[0], found[0]) && Arrays.equals(expected[1], found[1]),
+                "Splitting in " + how + " found " + found[0].length + " entries instead of " + expected[0].length
+                        + ", first difference at entry " + firstDifference(expected, found));
+    }
+
+    private static int firstDifference(long[][] expected, long[][] found) {
+        int i = 0;
+        while (i < expected[0].length && i < found[0].length
+                && expected[0][i] == found[0][i] && expected[1][i] == found[1][i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * The offsets and lengths of entries in the order they were split
+     */
+    private static class Entries {
+        private final List<Long> offsets = new ArrayList<>();
+        private final List<Long> lengths = new ArrayList<>();
+
+        void add(long offset, long length) {
+            offsets.add(offset);
+            lengths.add(length);
+        }
+
+        long[][] toArrays() {
+            long[][] arrays = new long[2][offsets.size()];
+            for (int i = 0; i < offsets.size(); i++) {
+                arrays[0][i] = offsets.get(i);
+                arrays[1][i] = lengths.get(i);
+            }
+            return arrays;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package log_parser;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+
+/**
+ * Checks the FieldTemplates.txt templates of the DATE format against both layouts of the lines in
+ * CombinedFile.txt: the security logger writes the account and address of some lines in brackets and of
+ * others without them.
+ *
+ * Runs without a test framework, with the compiled sources and their resources on the class path:
+ * <pre>
+ * java -ea -cp bin:test-bin log_parser.FieldExtractorTest
+ * </pre>
+ */
+public class FieldExtractorTest {
+
+    public static void main(String[] args) {
+        FieldExtractor extractor = FieldExtractor.forFormat(StandardBoundaryDetector.DATE);
+        check(extractor != null, "DATE has no templates");
+        String[] names = extractor.getNames();
+        check(Arrays.asList(names).equals(Arrays.asList("logger", "ip", "account", "mid")),
+                "Unexpected fields " + Arrays.toString(names));
+
+        // Account Management lines write both without brackets
+        expect(extractor, "2016-05-24 07:36:46,701 INFO  [com.tririga.architecture.security.logger.SecurityLogger] "
+                        + "Account Management - Action: DELETE - triPeople - Frazier, Tracey-1030721, Account: -1, "
+                        + "By: 10432544, From: 10.254.74.88, Status: SUCCESS",
+                "com.tririga.architecture.security.logger.SecurityLogger", "10.254.74.88", "-1", null);
+        expect(extractor, "2016-05-24 07:36:46,701 INFO  [com.tririga.architecture.security.logger.SecurityLogger] "
+                        + "Account Management - Action: UPDATE - triPeople - Account: 69662998, By: 10432544",
+                "com.tririga.architecture.security.logger.SecurityLogger", null, "69662998", null);
+
+        // Login attempts write both in brackets
+        expect(extractor, "2016-05-24 09:00:05,846 INFO  [com.tririga.architecture.security.logger.SecurityLogger] "
+                        + "Login Attempt -- To: [/html/en/default/admin/verify.jsp] Account: [1083503] "
+                        + "From: [10.254.18.122] Status: [SUCCESS]",
+                "com.tririga.architecture.security.logger.SecurityLogger", "10.254.18.122", "1083503", null);
+
+        expect(extractor, "2016-05-24 09:00:06,090 WARN  [com.tririga.XSS] XSS potential: Request did not come in "
+                        + "with TRIRIGA security token: /html/en/default/common/tririgastyle.jsp From: 10.254.18.122 "
+                        + "[MID-1315149363]",
+                "com.tririga.XSS", "10.254.18.122", null, "1315149363");
+        System.out.println("FieldExtractorTest passed");
+    }
+
+    private static void expect(FieldExtractor extractor, String line, String... expected) {
+        Matcher[] matchers = extractor.newMatchers();
+        String[] values = new String[matchers.length];
+        extractor.extract(line, matchers, values);
+        check(Arrays.equals(values, expected),
+                "Expected " + Arrays.toString(expected) + " but found " + Arrays.toString(values) + " in " + line);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}